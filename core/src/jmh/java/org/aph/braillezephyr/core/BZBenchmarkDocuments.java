@@ -0,0 +1,114 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.util.Random;
+
+/**
+ * <p>
+ * This class generates documents for the benchmarks.
+ * </p><p>
+ * The text is random words of uppercase letters and ASCII braille
+ * punctuation, so the documents for the same parameters are always the
+ * same.  Lines are generated until the text is at least the requested size.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+final class BZBenchmarkDocuments
+{
+	static final String EOL = "\r\n";
+
+	private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ,;:4/";
+
+	private BZBenchmarkDocuments(){}
+
+	/**
+	 * <p>
+	 * Returns the number of characters for a size such as
+	 * &quot;10KB&quot; or &quot;500MB&quot;.
+	 * </p>
+	 */
+	static int parseSize(String size)
+	{
+		if(size.endsWith("KB"))
+			return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024;
+		if(size.endsWith("MB"))
+			return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024 * 1024;
+		return Integer.parseInt(size);
+	}
+
+	/**
+	 * <p>
+	 * Generates the text of a document.
+	 * </p>
+	 *
+	 * @param size the least number of characters
+	 * @param lines &quot;short&quot; for lines well within the margin,
+	 *              &quot;full&quot; for lines up to the margin of 40, or
+	 *              &quot;long&quot; for lines that have not been wrapped
+	 * @param paragraphEvery how many lines each paragraph has on average,
+	 *                       0 for no paragraph ends
+	 * @param longestWord the length of the longest word
+	 * @param seed the seed for the random words
+	 *
+	 * @return the text
+	 */
+	static String generate(int size, String lines, int paragraphEvery, int longestWord, long seed)
+	{
+		Random random = new Random(seed);
+		int shortest, longest;
+		switch(lines)
+		{
+		case "short":  shortest = 5;  longest = 30;  break;
+		case "full":  shortest = 30;  longest = 40;  break;
+		case "long":  shortest = 60;  longest = 400;  break;
+		default:  throw new IllegalArgumentException("Unknown lines " + lines);
+		}
+
+		StringBuilder builder = new StringBuilder(size + longest + 16);
+		while(builder.length() < size)
+		{
+			int lineStart = builder.length();
+			int length = shortest + random.nextInt(longest - shortest + 1);
+			while(builder.length() - lineStart < length)
+			{
+				if(builder.length() > lineStart)
+					builder.append(' ');
+				int word = 1 + random.nextInt(longestWord);
+				for(int i = 0; i < word; i++)
+					builder.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+			}
+			if(paragraphEvery > 0 && random.nextInt(paragraphEvery) == 0)
+				builder.append(BZDocument.PARAGRAPH_END);
+			builder.append(EOL);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * <p>
+	 * Returns a document of the text that does not need a display.
+	 * </p>
+	 */
+	static BZDocument document(String text, int linesPerPage)
+	{
+		BZDocument document = new BZDocument(new BZStringContent(text));
+		document.setEol(EOL);
+		document.setLinesPerPage(linesPerPage);
+		return document;
+	}
+}
@@ -0,0 +1,183 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Benchmarks for reading and writing the BRF and BrailleZephyr file
+ * formats.
+ * </p><p>
+ * The documents are generated for each combination of size, line lengths,
+ * lines per page, which is how often a form feed is written to BRF files,
+ * and how often a line ends a paragraph.  The files are read from and
+ * written to memory, so only the codecs are measured.  The characters read
+ * or written are counted in the secondary result &quot;chars&quot;, as a
+ * rate per second; the files are ASCII apart from the paragraph marks of
+ * BrailleZephyr files, so this is very nearly bytes per second.  Run with
+ * the GC profiler for the allocation rate.
+ * </p><p>
+ * Larger documents need a larger heap than the fork is given, so they are
+ * only run when asked for, such as with
+ * <code>-p size=500MB -jvmArgsAppend -Xmx8g</code>.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class BZCodecBenchmark
+{
+	@Param({"10KB", "1MB", "50MB"})
+	public String size;
+
+	@Param({"short", "full", "long"})
+	public String lines;
+
+	@Param({"25", "5", "0"})
+	public int linesPerPage;
+
+	@Param({"0", "4"})
+	public int paragraphEvery;
+
+	private BZDocument document, readDocument;
+	private char brf[], bzy[];
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		String text = BZBenchmarkDocuments.generate(BZBenchmarkDocuments.parseSize(size), lines, paragraphEvery, 9, 1);
+		document = BZBenchmarkDocuments.document(text, linesPerPage);
+		readDocument = BZBenchmarkDocuments.document("", linesPerPage);
+
+		CharArrayWriter writer = new CharArrayWriter(text.length() + 1024);
+		document.writeBRF(writer);
+		brf = writer.toCharArray();
+
+		writer.reset();
+		document.writeBZY(writer);
+		bzy = writer.toCharArray();
+	}
+
+	/**
+	 * <p>
+	 * Counts the characters read or written.
+	 * </p>
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Chars
+	{
+		public long chars;
+
+		@Setup(Level.Iteration)
+		public void reset()
+		{
+			chars = 0;
+		}
+	}
+
+	@Benchmark
+	public BZDocument readBRF(Chars counter) throws IOException
+	{
+		readDocument.readBRF(new CharArrayReader(brf));
+		counter.chars += brf.length;
+		return readDocument;
+	}
+
+	@Benchmark
+	public long writeBRF(Chars counter) throws IOException
+	{
+		CountingWriter writer = new CountingWriter();
+		document.writeBRF(writer);
+		counter.chars += writer.count;
+		return writer.count;
+	}
+
+	@Benchmark
+	public BZDocument readBZY(Chars counter) throws IOException, BZFormatException
+	{
+		readDocument.readBZY(new CharArrayReader(bzy));
+		counter.chars += bzy.length;
+		return readDocument;
+	}
+
+	@Benchmark
+	public long writeBZY(Chars counter) throws IOException
+	{
+		CountingWriter writer = new CountingWriter();
+		document.writeBZY(writer);
+		counter.chars += writer.count;
+		return writer.count;
+	}
+
+	/**
+	 * <p>
+	 * Discards what is written, only counting the characters.
+	 * </p>
+	 */
+	private static final class CountingWriter extends Writer
+	{
+		private long count;
+
+		@Override
+		public void write(int c)
+		{
+			count++;
+		}
+
+		@Override
+		public void write(char buffer[], int offset, int length)
+		{
+			count += length;
+		}
+
+		@Override
+		public void write(String string, int offset, int length)
+		{
+			count += length;
+		}
+
+		@Override
+		public void flush(){}
+
+		@Override
+		public void close(){}
+	}
+}
@@ -0,0 +1,99 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Benchmarks for pagination, over documents of short lines.
+ * </p><p>
+ * These check each line for the start of a page, as painting and writing
+ * BRF files do, find the offset of each page, and find the page of offsets
+ * spread through the document.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BZPaginationBenchmark
+{
+	@Param({"64KB", "16MB"})
+	public String size;
+
+	@Param({"25", "0"})
+	public int linesPerPage;
+
+	private BZDocument document;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		String text = BZBenchmarkDocuments.generate(BZBenchmarkDocuments.parseSize(size), "short", 4, 9, 1);
+		document = BZBenchmarkDocuments.document(text, linesPerPage);
+	}
+
+	@Benchmark
+	public int firstLinesOnPages()
+	{
+		int lineCount = document.getContent().getLineCount();
+		int pages = 0;
+		for(int i = 0; i < lineCount; i++)
+		if(document.isFirstLineOnPage(i))
+			pages++;
+		return pages;
+	}
+
+	@Benchmark
+	public long pageOffsets()
+	{
+		BZContent content = document.getContent();
+		int pageCount = document.getPageCount();
+		long sum = 0;
+		for(int page = 0; page < pageCount; page++)
+			sum += content.getOffsetAtLine(document.getLineAtPage(page));
+		return sum;
+	}
+
+	@Benchmark
+	public long pagesAtOffsets()
+	{
+		BZContent content = document.getContent();
+		int charCount = content.getCharCount();
+		long sum = 0;
+		for(int offset = 0; offset < charCount; offset += 997)
+			sum += document.getPageAtLine(content.getLineAtOffset(offset));
+		return sum;
+	}
+}
@@ -0,0 +1,97 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Benchmarks for rewrapping.
+ * </p><p>
+ * The inputs are unwrapped lines in paragraphs of about four lines, the
+ * same with words longer than a line so that most lines cannot be wrapped,
+ * the same without any paragraph ends so that one rewrap goes through the
+ * whole document, and lines that are already wrapped.  Each invocation
+ * rewraps a new copy of the input, either from the first line, which
+ * rewraps the first paragraph, or every paragraph in turn.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BZRewrapBenchmark
+{
+	@Param({"64KB", "1MB"})
+	public String size;
+
+	@Param({"paragraphs", "longWords", "noParagraphs", "wrapped"})
+	public String input;
+
+	private String text;
+	private BZDocument document;
+
+	@Setup(Level.Trial)
+	public void generate()
+	{
+		int chars = BZBenchmarkDocuments.parseSize(size);
+		switch(input)
+		{
+		case "paragraphs":  text = BZBenchmarkDocuments.generate(chars, "long", 4, 9, 1);  break;
+		case "longWords":  text = BZBenchmarkDocuments.generate(chars, "long", 4, 60, 1);  break;
+		case "noParagraphs":  text = BZBenchmarkDocuments.generate(chars, "long", 0, 9, 1);  break;
+		case "wrapped":  text = BZBenchmarkDocuments.generate(chars, "full", 4, 9, 1);  break;
+		default:  throw new IllegalArgumentException("Unknown input " + input);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void reset()
+	{
+		document = BZBenchmarkDocuments.document(text, 25);
+	}
+
+	@Benchmark
+	public BZDocument rewrapFromStart()
+	{
+		document.rewrapFromLine(0);
+		return document;
+	}
+
+	@Benchmark
+	public BZDocument rewrapAll()
+	{
+		document.rewrapAll();
+		return document;
+	}
+}
@@ -0,0 +1,122 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Benchmarks for the undo history.
+ * </p><p>
+ * Each invocation starts with a document that has had the given number of
+ * characters typed into it, one change each, the way they are recorded
+ * when typing.  The benchmarks type the characters into a copy of the
+ * document, undo all the changes, undo and redo all of them, and undo half
+ * of them and then type, which removes the changes that could have been
+ * redone.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BZUndoBenchmark
+{
+	@Param({"1000", "100000"})
+	public int changes;
+
+	private String text;
+	private BZContent typedContent, content;
+	private BZUndoHistory typedHistory, history;
+
+	@Setup(Level.Trial)
+	public void generate()
+	{
+		text = BZBenchmarkDocuments.generate(64 * 1024, "full", 4, 9, 1);
+	}
+
+	@Setup(Level.Invocation)
+	public void reset()
+	{
+		content = new BZStringContent(text);
+		history = new BZUndoHistory();
+
+		typedContent = new BZStringContent(text);
+		typedHistory = new BZUndoHistory();
+		type(typedContent, typedHistory);
+	}
+
+	private int type(BZContent content, BZUndoHistory history)
+	{
+		//   type in the middle of the document
+		int offset = content.getCharCount() / 2;
+		for(int i = 0; i < changes; i++)
+			history.replaceTextRange(content, offset + i, 0, "A");
+		return history.getUndoCount();
+	}
+
+	@Benchmark
+	public int type()
+	{
+		return type(content, history);
+	}
+
+	@Benchmark
+	public int undoAll()
+	{
+		int offset = 0;
+		while(typedHistory.getUndoCount() > 0)
+			offset = typedHistory.undo(typedContent);
+		return offset;
+	}
+
+	@Benchmark
+	public int undoRedoAll()
+	{
+		int offset = 0;
+		while(typedHistory.getUndoCount() > 0)
+			offset = typedHistory.undo(typedContent);
+		while(typedHistory.getRedoCount() > 0)
+			offset = typedHistory.redo(typedContent);
+		return offset;
+	}
+
+	@Benchmark
+	public int undoHalfThenType()
+	{
+		for(int i = 0; i < changes / 2; i++)
+			typedHistory.undo(typedContent);
+		typedHistory.replaceTextRange(typedContent, 0, 0, "A");
+		return typedHistory.getRedoCount();
+	}
+}
@@ -0,0 +1,3 @@
+module org.aph.braillezephyr.core {
+	exports org.aph.braillezephyr.core;
+}
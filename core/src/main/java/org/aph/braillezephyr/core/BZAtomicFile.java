@@ -0,0 +1,114 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>
+ * This class writes files atomically, so that a file is either left as it
+ * was or completely replaced, even if writing fails or is interrupted.
+ * </p><p>
+ * The text is written to a temporary file in the same directory, which is
+ * synced to the disk and then moved over the file.  The permissions of a
+ * file being replaced are kept where the platform supports them.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZAtomicFile
+{
+	private static final int BUFFER_SIZE = 65536;
+
+	/**
+	 * <p>
+	 * Writes the text of a file.
+	 * </p>
+	 */
+	@FunctionalInterface
+	public interface TextWriter
+	{
+		void write(Writer writer) throws IOException;
+	}
+
+	private BZAtomicFile(){}
+
+	/**
+	 * <p>
+	 * Writes the file atomically.
+	 * </p>
+	 *
+	 * @param file the file to write
+	 * @param charset the encoding of the file
+	 * @param textWriter writes the text to the writer it is given
+	 *
+	 * @throws IOException if the file could not be written, in which case
+	 *                     it is unchanged
+	 */
+	public static void write(File file, Charset charset, TextWriter textWriter) throws IOException
+	{
+		Path path = file.getAbsoluteFile().toPath();
+
+		//   not Files.createTempFile, which makes the file private to the user
+		Path tempPath = path.resolveSibling("." + path.getFileName() + '.' + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+		try
+		{
+			try(FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+			{
+				Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), charset), BUFFER_SIZE);
+				textWriter.write(writer);
+				writer.flush();
+				channel.force(true);
+			}
+
+			if(Files.exists(path))
+			try
+			{
+				Files.setPosixFilePermissions(tempPath, Files.getPosixFilePermissions(path));
+			}
+			catch(UnsupportedOperationException ignored)
+			{
+				//   not a POSIX file system
+			}
+
+			try
+			{
+				Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException ignored)
+			{
+				Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(tempPath);
+		}
+	}
+}
@@ -0,0 +1,562 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * This class converts, rewraps, repaginates, and validates BRF and
+ * BrailleZephyr files without a display.
+ * </p><p>
+ * Directories are walked for BRF and BrailleZephyr files, and when there is
+ * an output directory the files are written to the same relative
+ * directories under it.  The files are processed in parallel, each on its
+ * own virtual thread where the runtime has them, otherwise on a
+ * work-stealing pool, and the number open at once is limited by the
+ * number of threads.  Each file is read through a buffered stream into its
+ * own document, changed, and written atomically, so only the files being
+ * processed are held in memory and a file is never left partly written.
+ * The whole file is held, as rewrapping and pages need the whole document,
+ * and validating a BRF file holds a second copy with its form feeds, so
+ * the files open at once are also limited by their size to half of the
+ * heap.  A file larger than that is processed alone.
+ * An error in one file is reported without stopping the others, and a
+ * summary of the throughput and errors is written at the end.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZBatch
+{
+	private static final int BUFFER_SIZE = 65536;
+
+	/**
+	 * Bytes of memory used for each byte of a file, for the text, the
+	 * copy that is built as it is read, and the copy that is validated.
+	 */
+	private static final int MEMORY_PER_BYTE = 4;
+
+	/**
+	 * Issues reported for each file when validating, the rest are counted.
+	 */
+	private static final int MAX_ISSUES = 10;
+
+	private final PrintWriter logWriter;
+
+	private String format;
+	private boolean rewrap, validate;
+	private int charsPerLine = -1, linesPerPage = -1;
+	private File outputDirectory, reportFile;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int versionMajor, versionMinor, versionPatch;
+
+	private final AtomicInteger filesDone = new AtomicInteger();
+	private final AtomicInteger filesFailed = new AtomicInteger();
+	private final AtomicInteger filesInvalid = new AtomicInteger();
+	private final AtomicLong charsRead = new AtomicLong();
+	private final Map<String, String> reports = new ConcurrentSkipListMap<>();
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZBatch</code>.
+	 * </p>
+	 *
+	 * @param logWriter where errors and the summary are written (cannot be null)
+	 */
+	public BZBatch(PrintWriter logWriter)
+	{
+		this.logWriter = logWriter;
+	}
+
+	/**
+	 * <p>
+	 * Sets the format to convert the files to.
+	 * </p>
+	 *
+	 * @param format &quot;brf&quot; or &quot;bzy&quot;, or null to keep
+	 *               the format of each file
+	 *
+	 * @throws IllegalArgumentException if the format is unknown
+	 */
+	public void setFormat(String format)
+	{
+		if(format != null && !format.equals("brf") && !format.equals("bzy"))
+			throw new IllegalArgumentException("Unknown format " + format);
+		this.format = format;
+	}
+
+	/**
+	 * <p>
+	 * Sets whether to rewrap every paragraph of the files.
+	 * </p>
+	 *
+	 * @param rewrap whether to rewrap
+	 */
+	public void setRewrap(boolean rewrap)
+	{
+		this.rewrap = rewrap;
+	}
+
+	/**
+	 * <p>
+	 * Sets whether to check the files as they are read with
+	 * <code>BZValidator</code>.  The pages of BRF files are checked against
+	 * their form feeds.
+	 * </p>
+	 *
+	 * @param validate whether to validate
+	 */
+	public void setValidate(boolean validate)
+	{
+		this.validate = validate;
+	}
+
+	/**
+	 * <p>
+	 * Sets the file the issues and errors of all files are written to as
+	 * JSON.
+	 * </p>
+	 *
+	 * @param reportFile the file, or null for no report
+	 */
+	public void setReportFile(File reportFile)
+	{
+		this.reportFile = reportFile;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of characters per line for rewrapping and validating.
+	 * </p>
+	 *
+	 * @param charsPerLine the number of characters, or -1 to use the
+	 *                     number of each file
+	 */
+	public void setCharsPerLine(int charsPerLine)
+	{
+		this.charsPerLine = charsPerLine;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of lines per page to repaginate the files to.
+	 * </p>
+	 *
+	 * @param linesPerPage the number of lines, 0 for no pages, or -1 to
+	 *                     keep the number of each file
+	 */
+	public void setLinesPerPage(int linesPerPage)
+	{
+		this.linesPerPage = linesPerPage;
+	}
+
+	/**
+	 * <p>
+	 * Sets the directory the files are written to.
+	 * </p>
+	 *
+	 * @param outputDirectory the directory, or null to write each file to
+	 *                        its own directory
+	 */
+	public void setOutputDirectory(File outputDirectory)
+	{
+		this.outputDirectory = outputDirectory;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of files processed at once.
+	 * </p>
+	 *
+	 * @param threads the number of files, at least 1
+	 */
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * <p>
+	 * Sets the version written in BrailleZephyr files.
+	 * </p>
+	 *
+	 * @param version the version, such as &quot;1.2.3&quot;
+	 */
+	public void setVersion(String version)
+	{
+		int versions[] = parseVersion(version);
+		versionMajor = versions[0];
+		versionMinor = versions[1];
+		versionPatch = versions[2];
+	}
+
+	static int[] parseVersion(String version)
+	{
+		String versionStrings[] = version.split("\\.");
+		try
+		{
+			return new int[]{Integer.parseInt(versionStrings[0]),
+			                 versionStrings.length > 1 ? Integer.parseInt(versionStrings[1]) : 0,
+			                 versionStrings.length > 2 ? Integer.parseInt(versionStrings[2]) : 0};
+		}
+		catch(NumberFormatException ignored)
+		{
+			return new int[3];
+		}
+	}
+
+	/**
+	 * <p>
+	 * Processes the files, and the files in the directories, and writes a
+	 * summary.
+	 * </p>
+	 *
+	 * @param inputs the files and directories to process
+	 *
+	 * @return whether every file was processed and valid
+	 */
+	public boolean run(List<File> inputs)
+	{
+		long start = System.nanoTime();
+
+		//   find all files first, so files being written are not found
+		List<File> files = new ArrayList<>();
+		List<File> outputDirectories = new ArrayList<>();
+		for(File input : inputs)
+		if(input.isDirectory())
+		{
+			Path root = input.toPath();
+			try(Stream<Path> paths = Files.walk(root))
+			{
+				paths.filter(path -> isBraille(path.getFileName().toString()) && Files.isRegularFile(path)).forEach(path ->
+				{
+					files.add(path.toFile());
+					if(outputDirectory != null)
+						outputDirectories.add(outputDirectory.toPath().resolve(root.relativize(path.getParent())).toFile());
+					else
+						outputDirectories.add(path.getParent().toFile());
+				});
+			}
+			catch(IOException | UncheckedIOException exception)
+			{
+				logWriter.println("ERROR:  Unable to read directory " + input.getPath() + ":  " + exception.getMessage());
+				filesFailed.incrementAndGet();
+			}
+		}
+		else
+		{
+			files.add(input);
+			outputDirectories.add(outputDirectory != null ? outputDirectory : input.getAbsoluteFile().getParentFile());
+		}
+
+		//   the memory of the files open at once is counted in kilobytes
+		ExecutorService executor = newExecutor(threads);
+		Semaphore open = new Semaphore(threads);
+		int memoryLimit = (int)Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 2 / 1024);
+		Semaphore memory = new Semaphore(memoryLimit);
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>(files.size());
+			for(int i = 0; i < files.size(); i++)
+			{
+				File file = files.get(i), directory = outputDirectories.get(i);
+				int kilobytes = (int)Math.max(1, Math.min(memoryLimit, file.length() / 1024 * MEMORY_PER_BYTE));
+				open.acquireUninterruptibly();
+				memory.acquireUninterruptibly(kilobytes);
+				futures.add(executor.submit(() ->
+				{
+					try
+					{
+						process(file, directory);
+					}
+					finally
+					{
+						memory.release(kilobytes);
+						open.release();
+					}
+				}));
+			}
+			for(Future<?> future : futures)
+				future.get();
+		}
+		catch(InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			logWriter.println("ERROR:  Interrupted");
+			filesFailed.incrementAndGet();
+		}
+		catch(ExecutionException exception)
+		{
+			logWriter.println("ERROR:  " + exception.getCause());
+			filesFailed.incrementAndGet();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		report(System.nanoTime() - start);
+		if(reportFile != null)
+			writeReport();
+		return filesFailed.get() == 0 && filesInvalid.get() == 0;
+	}
+
+	/**
+	 * Virtual threads are only available from Java 21, so they are found
+	 * by reflection.  The semaphore limits the files open at once either way.
+	 */
+	static ExecutorService newExecutor(int threads)
+	{
+		try
+		{
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException | RuntimeException ignored)
+		{
+			return new ForkJoinPool(threads);
+		}
+	}
+
+	private void process(File file, File directory)
+	{
+		StringWriter messages = new StringWriter();
+		PrintWriter fileLogWriter = new PrintWriter(messages);
+		List<BZValidator.Issue> issues = null;
+		String error = null;
+		try
+		{
+			BZDocument document = new BZDocument(new BZStringContent(), fileLogWriter);
+			document.setVersion(versionMajor, versionMinor, versionPatch);
+			boolean bzy = isBZY(file.getName());
+
+			BZValidator validator = null;
+			if(validate && !bzy)
+			{
+				//   keep the form feeds to check the pages
+				String text = readText(file);
+				document.readBRF(new StringReader(text));
+				validator = new BZValidator(new BZStringContent(text));
+			}
+			else
+			{
+				try(Reader reader = newReader(file))
+				{
+					if(bzy)
+						document.readBZY(reader);
+					else
+						document.readBRF(reader);
+				}
+				if(validate)
+					validator = new BZValidator(document.getContent());
+			}
+			charsRead.addAndGet(document.getContent().getCharCount());
+
+			if(charsPerLine > 0)
+				document.setCharsPerLine(charsPerLine);
+			if(validator != null)
+			{
+				validator.setFrom(document);
+				validator.validate();
+				issues = validator.getIssues();
+				if(!issues.isEmpty())
+				{
+					filesInvalid.incrementAndGet();
+					for(int i = 0; i < issues.size() && i < MAX_ISSUES; i++)
+						fileLogWriter.println("INVALID:  " + issues.get(i));
+					if(issues.size() > MAX_ISSUES)
+						fileLogWriter.println("INVALID:  " + (issues.size() - MAX_ISSUES) + " more issues");
+				}
+			}
+
+			if(linesPerPage >= 0)
+				document.setLinesPerPage(linesPerPage);
+			if(rewrap)
+				document.rewrapAll();
+
+			if(format != null || rewrap || linesPerPage >= 0 || outputDirectory != null)
+			{
+				boolean writeBZY = format == null ? bzy : format.equals("bzy");
+				if(!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+					throw new IOException("Unable to create directory " + directory.getPath());
+				write(document, outputFile(file, directory, writeBZY), writeBZY);
+			}
+			filesDone.incrementAndGet();
+		}
+		catch(IOException | BZFormatException | RuntimeException exception)
+		{
+			error = exception.getMessage();
+			if(error == null)
+				error = exception.toString();
+			fileLogWriter.println("ERROR:  " + error);
+			filesFailed.incrementAndGet();
+		}
+
+		if(reportFile != null && (error != null || issues != null && !issues.isEmpty()))
+			reports.put(file.getPath(), reportEntry(file, error, issues));
+
+		//   keep the messages of each file together
+		fileLogWriter.flush();
+		if(messages.getBuffer().length() > 0)
+		synchronized(logWriter)
+		{
+			for(String line : messages.toString().split("\\R"))
+				logWriter.println(file.getPath() + ":  " + line);
+			logWriter.flush();
+		}
+	}
+
+	static Reader newReader(File file) throws IOException
+	{
+		Charset charset = isBZY(file.getName()) ? BZDocument.getBZYCharset(file) : Charset.defaultCharset();
+		return new BufferedReader(new InputStreamReader(new FileInputStream(file), charset), BUFFER_SIZE);
+	}
+
+	private static String readText(File file) throws IOException
+	{
+		StringBuilder builder = new StringBuilder((int)Math.min(Integer.MAX_VALUE - 8, file.length()));
+		char buffer[] = new char[BUFFER_SIZE];
+		try(Reader reader = newReader(file))
+		{
+			int length;
+			while((length = reader.read(buffer)) > 0)
+				builder.append(buffer, 0, length);
+		}
+		return builder.toString();
+	}
+
+	static boolean isBZY(String fileName)
+	{
+		return fileName.toLowerCase(Locale.ROOT).endsWith(".bzy");
+	}
+
+	static boolean isBraille(String fileName)
+	{
+		return isBZY(fileName) || fileName.toLowerCase(Locale.ROOT).endsWith(".brf");
+	}
+
+	private static File outputFile(File file, File directory, boolean bzy)
+	{
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		if(dot > 0)
+			name = name.substring(0, dot);
+		name += bzy ? ".bzy" : ".brf";
+		return new File(directory, name);
+	}
+
+	static void write(BZDocument document, File file, boolean bzy) throws IOException
+	{
+		//   same encodings as BZFile
+		if(bzy)
+			BZAtomicFile.write(file, BZDocument.BZY_CHARSET, document::writeBZY);
+		else
+		{
+			int line = document.getUnicodeCellLine();
+			if(line >= 0)
+				throw new IOException("Line " + (line + 1) + " has 8-dot cells, which BRF files cannot hold");
+			BZAtomicFile.write(file, StandardCharsets.US_ASCII, document::writeBRF);
+		}
+	}
+
+	private static String reportEntry(File file, String error, List<BZValidator.Issue> issues)
+	{
+		StringBuilder builder = new StringBuilder(256);
+		builder.append("    { \"file\": ").append(BZValidator.jsonString(file.getPath()));
+		if(error != null)
+			builder.append(", \"error\": ").append(BZValidator.jsonString(error));
+		if(issues != null)
+		{
+			builder.append(", \"issues\": [");
+			for(int i = 0; i < issues.size(); i++)
+				builder.append(i > 0 ? ",\n" : "\n").append("      ").append(issues.get(i).toJson());
+			builder.append("\n    ]");
+		}
+		return builder.append(" }").toString();
+	}
+
+	private void writeReport()
+	{
+		try
+		{
+			BZAtomicFile.write(reportFile, StandardCharsets.UTF_8, writer ->
+			{
+				writer.write("{\n");
+				writer.write("  \"files\": " + (filesDone.get() + filesFailed.get()) + ",\n");
+				writer.write("  \"failed\": " + filesFailed.get() + ",\n");
+				writer.write("  \"invalid\": " + filesInvalid.get() + ",\n");
+				writer.write("  \"reports\": [");
+				boolean first = true;
+				for(String entry : reports.values())
+				{
+					writer.write(first ? "\n" : ",\n");
+					writer.write(entry);
+					first = false;
+				}
+				writer.write("\n  ]\n}\n");
+			});
+		}
+		catch(IOException exception)
+		{
+			logWriter.println("ERROR:  Unable to write report " + reportFile.getPath() + ":  " + exception.getMessage());
+			logWriter.flush();
+		}
+	}
+
+	private void report(long elapsed)
+	{
+		double seconds = elapsed / 1e9;
+		int files = filesDone.get() + filesFailed.get();
+		double megabytes = charsRead.get() / 1048576.0;
+		logWriter.println(String.format(Locale.ROOT,
+		                                "Processed %d files, %.1f MB in %.3f s:  %.1f files/s, %.1f MB/s",
+		                                files,
+		                                megabytes,
+		                                seconds,
+		                                files / seconds,
+		                                megabytes / seconds));
+		if(filesFailed.get() > 0 || filesInvalid.get() > 0)
+			logWriter.println("Failed:  " + filesFailed.get() + ", invalid:  " + filesInvalid.get());
+		logWriter.flush();
+	}
+}
@@ -0,0 +1,118 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+/**
+ * <p>
+ * This interface is the text of a document, as lines separated by line
+ * delimiters.
+ * </p><p>
+ * It has the same methods as SWT's <code>StyledTextContent</code> that are
+ * used by the document, so the text of a <code>StyledText</code> can be
+ * used through a simple adapter, and <code>BZStringContent</code> can be
+ * used without a display.
+ * </p>
+ *
+ * @see BZStringContent
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public interface BZContent
+{
+	/**
+	 * <p>
+	 * Returns the number of characters, including line delimiters.
+	 * </p>
+	 *
+	 * @return the number of characters
+	 */
+	int getCharCount();
+
+	/**
+	 * <p>
+	 * Returns the number of lines, which is one more than the number of
+	 * line delimiters.
+	 * </p>
+	 *
+	 * @return the number of lines
+	 */
+	int getLineCount();
+
+	/**
+	 * <p>
+	 * Returns the line without its delimiter.
+	 * </p>
+	 *
+	 * @param index the index of the line
+	 *
+	 * @return the line
+	 */
+	String getLine(int index);
+
+	/**
+	 * <p>
+	 * Returns the index of the line that contains the offset.
+	 * </p>
+	 *
+	 * @param offset the offset
+	 *
+	 * @return the index of the line
+	 */
+	int getLineAtOffset(int offset);
+
+	/**
+	 * <p>
+	 * Returns the offset of the first character of the line.
+	 * </p>
+	 *
+	 * @param index the index of the line
+	 *
+	 * @return the offset
+	 */
+	int getOffsetAtLine(int index);
+
+	/**
+	 * <p>
+	 * Returns part of the text.
+	 * </p>
+	 *
+	 * @param start the offset of the first character
+	 * @param length the number of characters
+	 *
+	 * @return the text
+	 */
+	String getTextRange(int start, int length);
+
+	/**
+	 * <p>
+	 * Replaces part of the text.
+	 * </p>
+	 *
+	 * @param start the offset of the first character to replace
+	 * @param length the number of characters to replace
+	 * @param text the text to replace them with
+	 */
+	void replaceTextRange(int start, int length, String text);
+
+	/**
+	 * <p>
+	 * Replaces all of the text.
+	 * </p>
+	 *
+	 * @param text the new text
+	 */
+	void setText(String text);
+}
@@ -0,0 +1,331 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>
+ * This class finds the lines that differ between two documents.
+ * </p><p>
+ * Each distinct line is given a number first, so the lines are only hashed
+ * once and then compared as integers.  Lines that are only in one of the
+ * documents cannot match, so they are marked as changed and left out
+ * before comparing, which keeps heavily revised documents fast.  The
+ * differences are found with the linear space version of the Myers
+ * algorithm, which finds the middle of the shortest edit and then the
+ * edits before and after it, so only two arrays the size of the lines are
+ * used at a time.  The parts before and after the middle do not depend on
+ * each other, so large parts are compared on separate threads.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZDiff
+{
+	/**
+	 * Parts with more lines than this, about 40 pages, are split between
+	 * threads.
+	 */
+	private static final int PARALLEL_LINES = 1024;
+
+	private final int oldNumbers[], newNumbers[];
+	private final int numberCount;
+	private final boolean oldChanged[], newChanged[];
+
+	//   lines that are in both, and where they are in the documents
+	private int oldLines[], newLines[];
+	private int oldIndexes[], newIndexes[];
+
+	/**
+	 * <p>
+	 * Lines that were changed, as the lines removed from the old document
+	 * and the lines inserted in their place in the new document.  Either
+	 * may be empty.
+	 * </p>
+	 */
+	public static final class Change
+	{
+		/**
+		 * The first line removed from the old document.
+		 */
+		public final int oldStart;
+
+		/**
+		 * The line after the last line removed from the old document.
+		 */
+		public final int oldEnd;
+
+		/**
+		 * The first line inserted in the new document.
+		 */
+		public final int newStart;
+
+		/**
+		 * The line after the last line inserted in the new document.
+		 */
+		public final int newEnd;
+
+		private Change(int oldStart, int oldEnd, int newStart, int newEnd)
+		{
+			this.oldStart = oldStart;
+			this.oldEnd = oldEnd;
+			this.newStart = newStart;
+			this.newEnd = newEnd;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZDiff</code> between the lines.
+	 * </p>
+	 *
+	 * @param oldLines the lines of the old document
+	 * @param newLines the lines of the new document
+	 */
+	public BZDiff(String oldLines[], String newLines[])
+	{
+		Map<String, Integer> numbers = new HashMap<>();
+		oldNumbers = number(oldLines, numbers);
+		newNumbers = number(newLines, numbers);
+		numberCount = numbers.size();
+		oldChanged = new boolean[oldLines.length];
+		newChanged = new boolean[newLines.length];
+	}
+
+	private static int[] number(String lines[], Map<String, Integer> numbers)
+	{
+		int result[] = new int[lines.length];
+		for(int i = 0; i < lines.length; i++)
+		{
+			Integer number = numbers.get(lines[i]);
+			if(number == null)
+			{
+				number = numbers.size();
+				numbers.put(lines[i], number);
+			}
+			result[i] = number;
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Returns the lines of the content.
+	 * </p>
+	 *
+	 * @param content the content
+	 *
+	 * @return the lines, without line delimiters
+	 */
+	public static String[] getLines(BZContent content)
+	{
+		String lines[] = new String[content.getLineCount()];
+		for(int i = 0; i < lines.length; i++)
+			lines[i] = content.getLine(i);
+		return lines;
+	}
+
+	/**
+	 * <p>
+	 * Finds the changes.
+	 * </p>
+	 *
+	 * @return the changes, in order
+	 */
+	public List<Change> diff()
+	{
+		int oldLength = oldNumbers.length, newLength = newNumbers.length;
+		boolean inOld[] = new boolean[numberCount], inNew[] = new boolean[numberCount];
+		for(int number : oldNumbers)
+			inOld[number] = true;
+		for(int number : newNumbers)
+			inNew[number] = true;
+		oldIndexes = keep(oldNumbers, inNew, oldChanged);
+		newIndexes = keep(newNumbers, inOld, newChanged);
+		oldLines = new int[oldIndexes.length];
+		for(int i = 0; i < oldIndexes.length; i++)
+			oldLines[i] = oldNumbers[oldIndexes[i]];
+		newLines = new int[newIndexes.length];
+		for(int i = 0; i < newIndexes.length; i++)
+			newLines[i] = newNumbers[newIndexes[i]];
+
+		DiffTask task = new DiffTask(0, oldLines.length, 0, newLines.length);
+		if(oldLines.length + newLines.length > PARALLEL_LINES)
+			ForkJoinPool.commonPool().invoke(task);
+		else
+			task.compute();
+
+		//   lines not changed in either are matched in order
+		List<Change> changes = new ArrayList<>();
+		int o = 0, n = 0;
+		while(o < oldLength || n < newLength)
+		{
+			if(o < oldLength && n < newLength && !oldChanged[o] && !newChanged[n])
+			{
+				o++;
+				n++;
+				continue;
+			}
+
+			int oldStart = o, newStart = n;
+			while(o < oldLength && oldChanged[o])
+				o++;
+			while(n < newLength && newChanged[n])
+				n++;
+			changes.add(new Change(oldStart, o, newStart, n));
+		}
+		return changes;
+	}
+
+	private static int[] keep(int numbers[], boolean inOther[], boolean changed[])
+	{
+		int kept[] = new int[numbers.length];
+		int count = 0;
+		for(int i = 0; i < numbers.length; i++)
+		if(inOther[numbers[i]])
+			kept[count++] = i;
+		else
+			changed[i] = true;
+		return Arrays.copyOf(kept, count);
+	}
+
+	private final class DiffTask extends RecursiveAction
+	{
+		private int oldStart, oldEnd, newStart, newEnd;
+
+		private DiffTask(int oldStart, int oldEnd, int newStart, int newEnd)
+		{
+			this.oldStart = oldStart;
+			this.oldEnd = oldEnd;
+			this.newStart = newStart;
+			this.newEnd = newEnd;
+		}
+
+		@Override
+		protected void compute()
+		{
+			//   skip matching lines at either end
+			while(oldStart < oldEnd && newStart < newEnd && oldLines[oldStart] == newLines[newStart])
+			{
+				oldStart++;
+				newStart++;
+			}
+			while(oldStart < oldEnd && newStart < newEnd && oldLines[oldEnd - 1] == newLines[newEnd - 1])
+			{
+				oldEnd--;
+				newEnd--;
+			}
+
+			if(oldStart == oldEnd)
+			{
+				for(int i = newStart; i < newEnd; i++)
+					newChanged[newIndexes[i]] = true;
+				return;
+			}
+			if(newStart == newEnd)
+			{
+				for(int i = oldStart; i < oldEnd; i++)
+					oldChanged[oldIndexes[i]] = true;
+				return;
+			}
+
+			//   the lines at both ends differ, so there are edits on
+			//   both sides of the middle and both parts are smaller
+			int snake[] = findMiddle();
+			DiffTask before = new DiffTask(oldStart, oldStart + snake[0], newStart, newStart + snake[1]);
+			DiffTask after = new DiffTask(oldStart + snake[2], oldEnd, newStart + snake[3], newEnd);
+			if((oldEnd - oldStart) + (newEnd - newStart) > PARALLEL_LINES)
+				invokeAll(before, after);
+			else
+			{
+				before.compute();
+				after.compute();
+			}
+		}
+
+		/**
+		 * Returns the start and end of the matching lines in the middle of
+		 * a shortest edit, relative to the starts.  The search runs forward
+		 * from the start and backward from the end until they overlap, and
+		 * diagonal k is where the old line minus the new line is k.
+		 */
+		private int[] findMiddle()
+		{
+			int oldLength = oldEnd - oldStart, newLength = newEnd - newStart;
+			int delta = oldLength - newLength;
+			boolean odd = (delta & 1) != 0;
+			int max = (oldLength + newLength + 1) / 2;
+			int offset = max + 1;
+			int forward[] = new int[2 * max + 3];
+			int backward[] = new int[2 * max + 3];
+
+			for(int d = 0; d <= max; d++)
+			{
+				for(int k = -d; k <= d; k += 2)
+				{
+					int x;
+					if(k == -d || k != d && forward[offset + k - 1] < forward[offset + k + 1])
+						x = forward[offset + k + 1];
+					else
+						x = forward[offset + k - 1] + 1;
+					int y = x - k;
+					int startX = x, startY = y;
+					while(x < oldLength && y < newLength && oldLines[oldStart + x] == newLines[newStart + y])
+					{
+						x++;
+						y++;
+					}
+					forward[offset + k] = x;
+
+					int c = delta - k;
+					if(odd && c >= -(d - 1) && c <= d - 1 && x + backward[offset + c] >= oldLength)
+						return new int[]{ startX, startY, x, y };
+				}
+
+				for(int c = -d; c <= d; c += 2)
+				{
+					int x;
+					if(c == -d || c != d && backward[offset + c - 1] < backward[offset + c + 1])
+						x = backward[offset + c + 1];
+					else
+						x = backward[offset + c - 1] + 1;
+					int y = x - c;
+					int startX = x, startY = y;
+					while(x < oldLength && y < newLength && oldLines[oldEnd - 1 - x] == newLines[newEnd - 1 - y])
+					{
+						x++;
+						y++;
+					}
+					backward[offset + c] = x;
+
+					int k = delta - c;
+					if(!odd && k >= -d && k <= d && x + forward[offset + k] >= oldLength)
+						return new int[]{ oldLength - x, newLength - y, oldLength - startX, newLength - startY };
+				}
+			}
+
+			//   not reached, the search always overlaps by max
+			return new int[]{ 0, 0, oldLength, newLength };
+		}
+	}
+}
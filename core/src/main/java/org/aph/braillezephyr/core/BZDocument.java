@@ -0,0 +1,779 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * <p>
+ * This class is a braille document without a display.  It reads and
+ * writes the BRF and BrailleZephyr file formats, rewraps lines, and
+ * computes pages, for the content it is given.
+ * </p><p>
+ * Pages are a fixed number of lines, and the end of a paragraph is marked
+ * by <code>PARAGRAPH_END</code> at the end of its last line.
+ * </p><p>
+ * Cells with dots 7 or 8 have no ASCII braille character, so they are kept
+ * as Unicode braille.  BrailleZephyr files are written in UTF-8 to hold
+ * them, and BRF files, which are ASCII, cannot hold them at all.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public class BZDocument
+{
+	/**
+	 * The character that marks the end of a paragraph in the content.
+	 */
+	public static final char PARAGRAPH_END = 0xfeff;
+
+	/**
+	 * The character that marks the end of a paragraph in BrailleZephyr
+	 * files.
+	 */
+	private static final char FILE_PARAGRAPH_END = 0xb6;
+
+	/**
+	 * The charset of BrailleZephyr files.
+	 */
+	public static final Charset BZY_CHARSET = StandardCharsets.UTF_8;
+
+	private final BZContent content;
+	private final PrintWriter logWriter;
+
+	private String eol = System.getProperty("line.separator");
+	private int linesPerPage = 25;
+	private int charsPerLine = 40;
+
+	private int versionMajor, versionMinor, versionPatch;
+	private int caretOffset;
+	private String viewFocus = "braille";
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZDocument</code> for the content.
+	 * </p>
+	 *
+	 * @param content the content of the document (cannot be null)
+	 * @param logWriter where warnings are written (cannot be null)
+	 */
+	public BZDocument(BZContent content, PrintWriter logWriter)
+	{
+		this.content = content;
+		this.logWriter = logWriter;
+	}
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZDocument</code> for the content that writes
+	 * warnings to standard error.
+	 * </p>
+	 *
+	 * @param content the content of the document (cannot be null)
+	 */
+	public BZDocument(BZContent content)
+	{
+		this(content, new PrintWriter(new OutputStreamWriter(System.err), true));
+	}
+
+	/**
+	 * <p>
+	 * Creates a new empty <code>BZDocument</code> that does not need a
+	 * display.
+	 * </p>
+	 */
+	public BZDocument()
+	{
+		this(new BZStringContent());
+	}
+
+	/**
+	 * <p>
+	 * Returns the content of the document.
+	 * </p>
+	 *
+	 * @return the content
+	 */
+	public BZContent getContent()
+	{
+		return content;
+	}
+
+	/**
+	 * <p>
+	 * Returns the line delimiter used when writing.
+	 * </p>
+	 *
+	 * @return the line delimiter
+	 */
+	public String getEol()
+	{
+		return eol;
+	}
+
+	/**
+	 * <p>
+	 * Sets the line delimiter used when writing, which is also set by
+	 * reading.
+	 * </p>
+	 *
+	 * @param eol the line delimiter
+	 */
+	public void setEol(String eol)
+	{
+		this.eol = eol;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of lines per page.
+	 * </p>
+	 *
+	 * @return the current value, 0 if there are no pages
+	 */
+	public int getLinesPerPage()
+	{
+		return linesPerPage;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of lines per page.
+	 * </p>
+	 *
+	 * @param linesPerPage the new value, 0 for no pages
+	 */
+	public void setLinesPerPage(int linesPerPage)
+	{
+		this.linesPerPage = linesPerPage;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of characters per line.
+	 * </p>
+	 *
+	 * @return the current value
+	 */
+	public int getCharsPerLine()
+	{
+		return charsPerLine;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of characters per line.  The current lines are not
+	 * rewrapped.
+	 * </p>
+	 *
+	 * @param charsPerLine the new value
+	 */
+	public void setCharsPerLine(int charsPerLine)
+	{
+		this.charsPerLine = charsPerLine;
+	}
+
+	/**
+	 * <p>
+	 * Sets the version written to BrailleZephyr files.
+	 * </p>
+	 *
+	 * @param major the major version
+	 * @param minor the minor version
+	 * @param patch the patch version
+	 */
+	public void setVersion(int major, int minor, int patch)
+	{
+		versionMajor = major;
+		versionMinor = minor;
+		versionPatch = patch;
+	}
+
+	/**
+	 * <p>
+	 * Returns the caret offset read from or written to BrailleZephyr files.
+	 * </p>
+	 *
+	 * @return the caret offset
+	 */
+	public int getCaretOffset()
+	{
+		return caretOffset;
+	}
+
+	/**
+	 * <p>
+	 * Sets the caret offset written to BrailleZephyr files.
+	 * </p>
+	 *
+	 * @param caretOffset the caret offset
+	 */
+	public void setCaretOffset(int caretOffset)
+	{
+		this.caretOffset = caretOffset;
+	}
+
+	/**
+	 * <p>
+	 * Returns the view with focus read from or written to BrailleZephyr
+	 * files.
+	 * </p>
+	 *
+	 * @return &quot;braille&quot; or &quot;ascii&quot;
+	 */
+	public String getViewFocus()
+	{
+		return viewFocus;
+	}
+
+	/**
+	 * <p>
+	 * Sets the view with focus written to BrailleZephyr files.
+	 * </p>
+	 *
+	 * @param viewFocus &quot;braille&quot; or &quot;ascii&quot;
+	 */
+	public void setViewFocus(String viewFocus)
+	{
+		this.viewFocus = viewFocus;
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the line is the first line of a page.
+	 * </p>
+	 *
+	 * @param index the index of the line
+	 *
+	 * @return whether the line starts a page
+	 */
+	public boolean isFirstLineOnPage(int index)
+	{
+		if(linesPerPage == 0)
+			return false;
+		return index % linesPerPage == 0;
+	}
+
+	/**
+	 * <p>
+	 * Returns the index of the page that contains the line.
+	 * </p>
+	 *
+	 * @param index the index of the line
+	 *
+	 * @return the index of the page
+	 */
+	public int getPageAtLine(int index)
+	{
+		if(linesPerPage == 0)
+			return 0;
+		return index / linesPerPage;
+	}
+
+	/**
+	 * <p>
+	 * Returns the index of the first line of the page.
+	 * </p>
+	 *
+	 * @param page the index of the page
+	 *
+	 * @return the index of the line
+	 */
+	public int getLineAtPage(int page)
+	{
+		return page * linesPerPage;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of pages, the last of which may not be full.
+	 * </p>
+	 *
+	 * @return the number of pages
+	 */
+	public int getPageCount()
+	{
+		if(linesPerPage == 0)
+			return 1;
+		return (content.getLineCount() + linesPerPage - 1) / linesPerPage;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of cells of the line, which does not include a
+	 * form feed at its start or the mark at the end of a paragraph.
+	 * </p>
+	 *
+	 * @param line the text of the line
+	 *
+	 * @return the number of cells
+	 */
+	public static int getCellCount(String line)
+	{
+		int start = 0, end = line.length();
+		if(end > 0 && line.charAt(0) == 0xc)
+			start = 1;
+		if(end > start && line.charAt(end - 1) == PARAGRAPH_END)
+			end--;
+		return end - start;
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the character is a cell, either ASCII braille or
+	 * Unicode braille.  Form feeds, line delimiters, and end of paragraph
+	 * marks are not cells.
+	 * </p>
+	 *
+	 * @param c the character
+	 *
+	 * @return whether the character is a cell
+	 */
+	public static boolean isCell(char c)
+	{
+		return c >= 0x20 && c <= 0x7e || isUnicodeCell(c);
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the character is a cell kept as Unicode braille,
+	 * which are the cells with dots 7 or 8.
+	 * </p>
+	 *
+	 * @param c the character
+	 *
+	 * @return whether the character is a Unicode braille cell
+	 */
+	public static boolean isUnicodeCell(char c)
+	{
+		return c >= 0x2800 && c <= 0x28ff;
+	}
+
+	/**
+	 * <p>
+	 * Returns the index of the first line with a Unicode braille cell,
+	 * which cannot be written to a BRF file.
+	 * </p>
+	 *
+	 * @return the index of the line, or -1 if there is none
+	 */
+	public int getUnicodeCellLine()
+	{
+		for(int i = 0; i < content.getLineCount(); i++)
+		{
+			String line = content.getLine(i);
+			for(int j = 0; j < line.length(); j++)
+			if(isUnicodeCell(line.charAt(j)))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * <p>
+	 * Returns the charset to read the BrailleZephyr file with.  This is
+	 * <code>BZY_CHARSET</code> unless the file is not valid in it, as files
+	 * were once written in the default charset.
+	 * </p>
+	 *
+	 * @param file the file
+	 *
+	 * @return the charset
+	 *
+	 * @exception IOException
+	 */
+	public static Charset getBZYCharset(File file) throws IOException
+	{
+		//   the chars are at most as many as the bytes, so the decoder
+		//   never overflows and any leftover bytes are an unfinished char
+		CharsetDecoder decoder = BZY_CHARSET.newDecoder();
+		ByteBuffer bytes = ByteBuffer.allocate(65536);
+		CharBuffer chars = CharBuffer.allocate(65536);
+		try(ReadableByteChannel channel = Files.newByteChannel(file.toPath()))
+		{
+			boolean end = false;
+			while(!end)
+			{
+				end = channel.read(bytes) < 0;
+				bytes.flip();
+				if(decoder.decode(bytes, chars, end).isError())
+					return Charset.defaultCharset();
+				bytes.compact();
+				chars.clear();
+			}
+		}
+		return BZY_CHARSET;
+	}
+
+	/**
+	 * <p>
+	 * Reads data in BRF format from <code>Reader</code>.
+	 * </p><p>
+	 * An attempt is made to determine the number of lines per page and the
+	 * line delimiter.
+	 * </p>
+	 *
+	 * @param reader the reader stream from which to read the data.
+	 *
+	 * @exception IOException
+	 *
+	 * @see #writeBRF(Writer)
+	 */
+	public void readBRF(Reader reader) throws IOException
+	{
+		StringBuilder stringBuilder = new StringBuilder(65536);
+		boolean checkLinesPerPage = true;
+		boolean removeFormFeed = true;
+		char buffer[] = new char[65536];
+		int cnt, trim;
+
+		eol = null;
+		while((cnt = reader.read(buffer)) > 0)
+		{
+			//   see if lines per page can be determined
+			if(checkLinesPerPage)
+			{
+				checkLinesPerPage = false;
+				int lines = 0, i;
+				outer:for(i = 0; i < cnt; i++)
+				switch(buffer[i])
+				{
+				case '\n':  lines++;  break;
+
+				case '\r':
+
+					if(eol == null)
+						eol = "\r\n";
+					break;
+
+				case 0xc:
+
+					linesPerPage = lines;
+					break outer;
+				}
+
+				if(eol == null)
+					eol = "\n";
+				if(i == cnt)
+					removeFormFeed = false;
+			}
+
+			//   remove form feeds
+			if(removeFormFeed)
+			{
+				trim = 0;
+				for(int i = 0; i < cnt; i++)
+				if(buffer[i] != 0xc)
+				{
+					buffer[trim] = buffer[i];
+					trim++;
+				}
+			}
+			else
+				trim = cnt;
+
+			stringBuilder.append(buffer, 0, trim);
+		}
+
+		if(eol == null)
+			eol = System.getProperty("line.separator");
+		content.setText(stringBuilder.toString());
+	}
+
+	/**
+	 * <p>
+	 * Writes data in BRF format to <code>Writer</code>.
+	 * </p>
+	 *
+	 * @param writer the writer stream to write the data.
+	 *
+	 * @exception IOException
+	 *
+	 * @see #readBRF(Reader)
+	 */
+	public void writeBRF(Writer writer) throws IOException
+	{
+		//   write first line
+		writeLine(writer, content.getLine(0), false);
+
+		//   write remaining lines
+		for(int i = 1; i < content.getLineCount(); i++)
+		{
+			writer.write(eol);
+			if(isFirstLineOnPage(i))
+				writer.write(0xc);
+			writeLine(writer, content.getLine(i), false);
+		}
+
+		writer.flush();
+	}
+
+	/**
+	 * <p>
+	 * Reads data in BrailleZephyr file format from <code>Reader</code>.
+	 * </p><p>
+	 * The caret offset and view focus are read into the document for the
+	 * caller to use.
+	 * </p>
+	 *
+	 * @param reader the reader stream from which to read the data.
+	 *
+	 * @exception IOException
+	 * @exception BZFormatException if the header is invalid
+	 *
+	 * @see #writeBZY(Writer)
+	 */
+	public void readBZY(Reader reader) throws IOException, BZFormatException
+	{
+		String line;
+		boolean returnAtEnd = false;
+		int unknown = 0;
+
+		content.setText("");
+		eol = System.getProperty("line.separator");
+		caretOffset = 0;
+		BufferedReader buffer = new BufferedReader(reader);
+
+		//   read configuration lines
+		header:while((line = buffer.readLine()) != null)
+		{
+			String tokens[] = line.split(" ");
+			switch(tokens[0])
+			{
+
+			//   don't do anything for now
+			case "Version":  break;
+
+			case "CharsPerLine":  charsPerLine = Integer.parseInt(tokens[1]);  break;
+			case "LinesPerPage":  linesPerPage = Integer.parseInt(tokens[1]);  break;
+
+			case "CaretOffset":  caretOffset  = Integer.parseInt(tokens[1]);  break;
+			case "ViewFocus":
+
+				if(tokens[1].equals("braille") || tokens[1].equals("ascii"))
+					viewFocus = tokens[1];
+				else
+					logWriter.println("ERROR:  Invalid ViewFocus value:  " + line);
+				break;
+
+			case "ReturnAtEnd":  returnAtEnd = Boolean.parseBoolean(tokens[1]); break;
+
+			case "HeaderEnd":  break header;
+
+			default:
+
+				logWriter.println("WARNING:  Unknown file format parameter:  " + line);
+				unknown++;
+				if(unknown > 6)
+					throw new BZFormatException("Invalid file format");
+				break;
+			}
+		}
+		if(line == null)
+			throw new BZFormatException("Invalid file format");
+
+		//   read lines, the first may be null for empty document
+		StringBuilder stringBuilder = new StringBuilder(65536);
+		if((line = buffer.readLine()) != null)
+		{
+			appendLine(stringBuilder, line);
+			while((line = buffer.readLine()) != null)
+			{
+				stringBuilder.append(eol);
+				appendLine(stringBuilder, line);
+			}
+		}
+
+		if(returnAtEnd)
+			stringBuilder.append(eol);
+
+		content.setText(stringBuilder.toString());
+	}
+
+	private static void appendLine(StringBuilder stringBuilder, String line)
+	{
+		if(line.length() > 0 && line.charAt(line.length() - 1) == FILE_PARAGRAPH_END)
+			stringBuilder.append(line, 0, line.length() - 1).append(PARAGRAPH_END);
+		else
+			stringBuilder.append(line);
+	}
+
+	/**
+	 * <p>
+	 * Writes data in BrailleZephyr file format to <code>Writer</code>.
+	 * </p>
+	 *
+	 * @param writer the writer stream to write the data.
+	 *
+	 * @exception IOException
+	 *
+	 * @see #readBZY(Reader)
+	 */
+	public void writeBZY(Writer writer) throws IOException
+	{
+		//   write configuration lines
+		writer.write("Version " + versionMajor + ' ' + versionMinor + ' ' + versionPatch + eol);
+
+		writer.write("CharsPerLine " + charsPerLine + eol);
+		writer.write("LinesPerPage " + linesPerPage + eol);
+
+		writer.write("CaretOffset " + caretOffset + eol);
+		writer.write("ViewFocus " + viewFocus + eol);
+
+		if(content.getCharCount() > 0)
+			writer.write("ReturnAtEnd " + (content.getLine(content.getLineCount() - 1).length() == 0) + eol);
+		else
+			writer.write("ReturnAtEnd false" + eol);
+
+		writer.write("HeaderEnd" + eol);
+
+		//   write first line
+		writeLine(writer, content.getLine(0), true);
+
+		//   write text
+		for(int i = 1; i < content.getLineCount(); i++)
+		{
+			writer.write(eol);
+			writeLine(writer, content.getLine(i), true);
+		}
+
+		writer.flush();
+	}
+
+	private static void writeLine(Writer writer, String line, boolean paragraphEnd) throws IOException
+	{
+		int length = line.length();
+		if(length > 0 && line.charAt(length - 1) == PARAGRAPH_END)
+		{
+			writer.write(line, 0, length - 1);
+			if(paragraphEnd)
+				writer.write(FILE_PARAGRAPH_END);
+		}
+		else
+			writer.write(line);
+	}
+
+	/**
+	 * <p>
+	 * Wraps lines at and below the line that exceed the number of
+	 * characters per line.
+	 * </p><p>
+	 * Lines are wrapped at spaces between words when possible.  Lines that
+	 * don't exceed the number of characters per line are not changed.
+	 * Rewrapping stops at the end of the paragraph.
+	 * </p>
+	 *
+	 * @param index the index of the first line to rewrap
+	 */
+	public void rewrapFromLine(int index)
+	{
+		StringBuilder stringBuilder = new StringBuilder(charsPerLine * 3);
+
+		for(int i = index; i < content.getLineCount(); i++)
+		{
+			String line = content.getLine(i);
+			if(line.length() == 0)
+				continue;
+
+			//   line too long
+			if(line.length() > charsPerLine)
+			{
+				int wordWrap, wordEnd;
+
+				//   find beginning of word being wrapped
+				if(line.charAt(charsPerLine) != ' ')
+				{
+					for(wordWrap = charsPerLine; wordWrap > charsPerLine / 2; wordWrap--)
+						if(line.charAt(wordWrap) == ' ')
+							break;
+					if(wordWrap == charsPerLine / 2)
+						continue;
+					wordWrap++;
+				}
+				else
+				{
+					for(wordWrap = charsPerLine; wordWrap < line.length(); wordWrap++)
+						if(line.charAt(wordWrap) != ' ')
+							break;
+					if(wordWrap == line.length())
+						continue;
+				}
+
+				//   find end of word before word being wrapped
+				for(wordEnd = wordWrap - 1; wordEnd > charsPerLine / 4; wordEnd--)
+					if(line.charAt(wordEnd) != ' ')
+						break;
+				if(wordEnd == charsPerLine / 4)
+					continue;
+				wordEnd++;
+
+				//   build replacement text
+				int length = line.length();
+				stringBuilder.setLength(0);
+				stringBuilder.append(line, 0, wordEnd).append(eol).append(line, wordWrap, length);
+				if(length > 0 && line.charAt(length - 1) != PARAGRAPH_END)
+				if(i < content.getLineCount() - 1)
+				{
+					String next = content.getLine(i + 1);
+					stringBuilder.append(' ').append(next);
+					length += eol.length() + next.length();
+				}
+
+				content.replaceTextRange(content.getOffsetAtLine(i), length, stringBuilder.toString());
+			}
+			else if(line.length() > 0 && line.charAt(line.length() - 1) == PARAGRAPH_END)
+				break;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Wraps the lines of every paragraph that exceed the number of
+	 * characters per line.
+	 * </p>
+	 *
+	 * @see #rewrapFromLine(int)
+	 */
+	public void rewrapAll()
+	{
+		int index = 0;
+		while(index < content.getLineCount())
+		{
+			rewrapFromLine(index);
+
+			//   next paragraph
+			while(index < content.getLineCount())
+			{
+				String line = content.getLine(index++);
+				if(line.length() > 0 && line.charAt(line.length() - 1) == PARAGRAPH_END)
+					break;
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+/**
+ * <p>
+ * This class searches for cells by their dots.
+ * </p><p>
+ * The pattern is a list of cells separated by spaces.  Each cell is the
+ * numbers of its dots, such as <code>125</code>, or <code>0</code> for no
+ * dots, and matches only cells with exactly those dots.  A cell followed by
+ * <code>*</code>, such as <code>12*</code>, matches any cell with at least
+ * those dots, and <code>*</code> alone matches any cell.
+ * </p><p>
+ * The dots of each character are found by inverting the ASCII braille
+ * table, and characters in the Unicode braille block are their own dots.
+ * For each ASCII character, a table holds a bit for each cell of the
+ * pattern that it matches, so the text is scanned with the shift-and
+ * algorithm:  one table lookup, shift and mask for each character, with no
+ * branches until a match ends.  Patterns can have up to 31 cells.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZDotFind extends BZFind
+{
+	private final int required[], forbidden[];
+	private final int asciiDots[] = new int[128];
+	private final int asciiMatches[] = new int[128];
+	private final int matchBit;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZDotFind</code> for the pattern.
+	 * </p>
+	 *
+	 * @param pattern the cells to find
+	 * @param asciiBraille the characters for the 64 six dot patterns,
+	 *                     indexed by dots
+	 *
+	 * @throws IllegalArgumentException if the pattern is not valid
+	 */
+	public BZDotFind(String pattern, String asciiBraille)
+	{
+		String cells[] = pattern.trim().split("\\s+");
+		if(cells[0].isEmpty())
+			throw new IllegalArgumentException("no cells");
+		if(cells.length > 31)
+			throw new IllegalArgumentException("more than 31 cells");
+
+		required = new int[cells.length];
+		forbidden = new int[cells.length];
+		for(int i = 0; i < cells.length; i++)
+			parseCell(cells[i], i);
+		matchBit = 1 << (cells.length - 1);
+
+		for(int c = 0; c < asciiDots.length; c++)
+			asciiDots[c] = -1;
+		for(int dots = 0; dots < 64 && dots < asciiBraille.length(); dots++)
+		{
+			char c = asciiBraille.charAt(dots);
+			if(c < asciiDots.length)
+			{
+				asciiDots[c] = dots;
+				asciiDots[BZTextFind.fold(c)] = dots;
+				if(c >= 'A' && c <= 'Z')
+					asciiDots[c + ('a' - 'A')] = dots;
+			}
+		}
+		for(int c = 0; c < asciiMatches.length; c++)
+			asciiMatches[c] = matches(asciiDots[c]);
+	}
+
+	private void parseCell(String cell, int index)
+	{
+		boolean any = cell.endsWith("*");
+		if(any)
+			cell = cell.substring(0, cell.length() - 1);
+
+		int dots = 0;
+		for(int i = 0; i < cell.length(); i++)
+		{
+			char c = cell.charAt(i);
+			if(c == '0' && cell.length() == 1)
+				continue;
+			if(c < '1' || c > '8')
+				throw new IllegalArgumentException("invalid cell " + cell);
+			dots |= 1 << (c - '1');
+		}
+		if(cell.isEmpty() && !any)
+			throw new IllegalArgumentException("empty cell");
+
+		required[index] = dots;
+		forbidden[index] = any ? 0 : ~dots & 0xff;
+	}
+
+	/**
+	 * Returns a bit for each cell of the pattern the dots match.
+	 */
+	private int matches(int dots)
+	{
+		if(dots < 0)
+			return 0;
+		int bits = 0;
+		for(int i = 0; i < required.length; i++)
+		if((dots & required[i]) == required[i] && (dots & forbidden[i]) == 0)
+			bits |= 1 << i;
+		return bits;
+	}
+
+	/**
+	 * <p>
+	 * Returns the dots of the character.
+	 * </p>
+	 *
+	 * @param c the character
+	 *
+	 * @return the dots, dot 1 is bit 0, or -1 if the character is not a cell
+	 */
+	public int getDots(char c)
+	{
+		if(c < asciiDots.length)
+			return asciiDots[c];
+		if(BZDocument.isUnicodeCell(c))
+			return c & 0xff;
+		return -1;
+	}
+
+	@Override
+	public int find(CharSequence text, int from, int to)
+	{
+		int state = 0;
+		for(int i = Math.max(0, from); i < to; i++)
+		{
+			char c = text.charAt(i);
+			int bits = c < asciiMatches.length ? asciiMatches[c] : matches(getDots(c));
+			state = ((state << 1) | 1) & bits;
+			if((state & matchBit) != 0)
+			{
+				matchEnd = i + 1;
+				return i + 1 - required.length;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int getMaxLength()
+	{
+		return required.length;
+	}
+}
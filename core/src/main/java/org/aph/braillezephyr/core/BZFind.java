@@ -0,0 +1,105 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+/**
+ * <p>
+ * This class is the base of the ways of searching text.
+ * </p><p>
+ * A find returns the start of the first match and keeps its end, so it
+ * should only be used by one thread at a time.  If matches may overlap,
+ * the next match is looked for from one past the start of the previous,
+ * otherwise from its end.
+ * </p>
+ *
+ * @see BZFindHits
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public abstract class BZFind
+{
+	/**
+	 * <p>
+	 * The end of the last match.
+	 * </p>
+	 */
+	protected int matchEnd;
+
+	/**
+	 * <p>
+	 * Returns the start of the first match that starts at or after
+	 * <code>from</code> and ends at or before <code>to</code>.
+	 * </p>
+	 *
+	 * @param text the text to search
+	 * @param from the offset to start searching from
+	 * @param to the offset to stop searching at
+	 *
+	 * @return the start of the match, or -1 if there is none
+	 */
+	public abstract int find(CharSequence text, int from, int to);
+
+	/**
+	 * <p>
+	 * Returns the end of the last match found.
+	 * </p>
+	 *
+	 * @return the offset after the last character of the match
+	 */
+	public int getEnd()
+	{
+		return matchEnd;
+	}
+
+	/**
+	 * <p>
+	 * Returns the most characters a match can have, which limits how much
+	 * text around a change has to be searched again.
+	 * </p>
+	 *
+	 * @return the length, or <code>Integer.MAX_VALUE</code> if there is no
+	 *         limit
+	 */
+	public abstract int getMaxLength();
+
+	/**
+	 * <p>
+	 * Returns whether matches may overlap.
+	 * </p>
+	 *
+	 * @return true unless overridden
+	 */
+	public boolean isOverlapping()
+	{
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Returns where to look for the match after the last match found.
+	 * </p>
+	 *
+	 * @param start the start of the last match
+	 *
+	 * @return the offset to search from
+	 */
+	public int getNextFrom(int start)
+	{
+		if(isOverlapping())
+			return start + 1;
+		return Math.max(start + 1, matchEnd);
+	}
+}
@@ -0,0 +1,167 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class keeps the matches of a search, sorted by their start.
+ * </p><p>
+ * Matches may be added by a search running on another thread while they
+ * are read, so all methods are synchronized.  When the text changes, the
+ * matches that may have been changed are removed and the ones after the
+ * change are moved, so only the text near the change has to be searched
+ * again.
+ * </p>
+ *
+ * @see BZFind
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZFindHits
+{
+	private int starts[] = new int[64];
+	private int ends[] = new int[64];
+	private int size;
+
+	/**
+	 * <p>
+	 * Removes all matches.
+	 * </p>
+	 */
+	public synchronized void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of matches.
+	 * </p>
+	 *
+	 * @return the number of matches
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * <p>
+	 * Returns the start of the match.
+	 * </p>
+	 *
+	 * @param index the index of the match
+	 *
+	 * @return the offset of the start
+	 */
+	public synchronized int getStart(int index)
+	{
+		return starts[index];
+	}
+
+	/**
+	 * <p>
+	 * Returns the end of the match.
+	 * </p>
+	 *
+	 * @param index the index of the match
+	 *
+	 * @return the offset after the end
+	 */
+	public synchronized int getEnd(int index)
+	{
+		return ends[index];
+	}
+
+	/**
+	 * <p>
+	 * Returns the index of the first match that starts at or after the
+	 * offset.
+	 * </p>
+	 *
+	 * @param offset the offset
+	 *
+	 * @return the index, which is the number of matches if there is none
+	 */
+	public synchronized int indexOf(int offset)
+	{
+		int low = 0, high = size;
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(starts[middle] < offset)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * <p>
+	 * Adds the match, which may be anywhere among the others.
+	 * </p>
+	 *
+	 * @param start the offset of the start
+	 * @param end the offset after the end
+	 */
+	public synchronized void add(int start, int end)
+	{
+		if(size == starts.length)
+		{
+			starts = Arrays.copyOf(starts, size * 2);
+			ends = Arrays.copyOf(ends, size * 2);
+		}
+
+		int index = size;
+		if(size > 0 && starts[size - 1] > start)
+		{
+			index = indexOf(start);
+			System.arraycopy(starts, index, starts, index + 1, size - index);
+			System.arraycopy(ends, index, ends, index + 1, size - index);
+		}
+		starts[index] = start;
+		ends[index] = end;
+		size++;
+	}
+
+	/**
+	 * <p>
+	 * Removes the matches that start from <code>from</code> up to
+	 * <code>to</code>, and moves the matches after them by
+	 * <code>amount</code>.
+	 * </p>
+	 *
+	 * @param from the first offset to remove matches from
+	 * @param to the offset to stop removing at
+	 * @param amount the number of characters to move the remaining matches
+	 */
+	public synchronized void removeAndMove(int from, int to, int amount)
+	{
+		int first = indexOf(from);
+		int last = indexOf(to);
+		System.arraycopy(starts, last, starts, first, size - last);
+		System.arraycopy(ends, last, ends, first, size - last);
+		size -= last - first;
+		for(int i = first; i < size; i++)
+		{
+			starts[i] += amount;
+			ends[i] += amount;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class marks lines of a document with values, and keeps the marks
+ * on their lines as lines are inserted and removed.
+ * </p><p>
+ * The marks are kept sorted by line in a gap buffer.  Marks before the gap
+ * hold their line, and marks after the gap hold their line relative to the
+ * number of lines, so inserting or removing lines at the gap changes no
+ * marks.  The gap is moved to each change, so the cost of a change is the
+ * number of marks between it and the previous change, which for typing is
+ * the number of lines changed.
+ * </p>
+ *
+ * @param <T> the type of the values
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZLineMarks<T>
+{
+	private int lines[] = new int[16];
+	private Object values[] = new Object[16];
+	private int gapStart, gapEnd = 16;
+	private int lineCount;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZLineMarks</code> for a document of one line.
+	 * </p>
+	 */
+	public BZLineMarks()
+	{
+		clear(1);
+	}
+
+	/**
+	 * <p>
+	 * Removes all marks.
+	 * </p>
+	 *
+	 * @param lineCount the number of lines in the document
+	 */
+	public void clear(int lineCount)
+	{
+		Arrays.fill(values, null);
+		gapStart = 0;
+		gapEnd = lines.length;
+		this.lineCount = lineCount;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of lines in the document.
+	 * </p>
+	 *
+	 * @return the number of lines
+	 */
+	public int getLineCount()
+	{
+		return lineCount;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of marked lines.
+	 * </p>
+	 *
+	 * @return the number of marks
+	 */
+	public int size()
+	{
+		return lines.length - (gapEnd - gapStart);
+	}
+
+	/**
+	 * <p>
+	 * Returns the line of a mark.
+	 * </p>
+	 *
+	 * @param index the index of the mark, from 0 to size() - 1
+	 *
+	 * @return the line
+	 */
+	public int getLine(int index)
+	{
+		if(index < gapStart)
+			return lines[index];
+		return lines[index + gapEnd - gapStart] + lineCount;
+	}
+
+	/**
+	 * <p>
+	 * Returns the value of a mark.
+	 * </p>
+	 *
+	 * @param index the index of the mark, from 0 to size() - 1
+	 *
+	 * @return the value
+	 */
+	@SuppressWarnings("unchecked")
+	public T getValue(int index)
+	{
+		if(index < gapStart)
+			return (T)values[index];
+		return (T)values[index + gapEnd - gapStart];
+	}
+
+	/**
+	 * <p>
+	 * Returns the index of the first mark at or after the line.
+	 * </p>
+	 *
+	 * @param line the line
+	 *
+	 * @return the index, which is size() if there are no marks at or after
+	 *         the line
+	 */
+	public int indexOf(int line)
+	{
+		int low = 0, high = size();
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(getLine(middle) < line)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * <p>
+	 * Returns the value the line is marked with.
+	 * </p>
+	 *
+	 * @param line the line
+	 *
+	 * @return the value, or null if the line is not marked
+	 */
+	public T get(int line)
+	{
+		int index = indexOf(line);
+		if(index < size() && getLine(index) == line)
+			return getValue(index);
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Marks the line with the value.
+	 * </p>
+	 *
+	 * @param line the line
+	 * @param value the value, or null to remove the mark
+	 */
+	public void set(int line, T value)
+	{
+		int index = indexOf(line);
+		boolean marked = index < size() && getLine(index) == line;
+		if(marked)
+		{
+			moveGap(index);
+			if(value == null)
+			{
+				values[gapEnd] = null;
+				gapEnd++;
+			}
+			else
+				values[gapEnd] = value;
+		}
+		else if(value != null)
+		{
+			moveGap(index);
+			if(gapStart == gapEnd)
+				grow();
+			lines[gapStart] = line;
+			values[gapStart] = value;
+			gapStart++;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the first marked line after the line.
+	 * </p>
+	 *
+	 * @param line the line
+	 *
+	 * @return the marked line, or -1 if there is none
+	 */
+	public int next(int line)
+	{
+		int index = indexOf(line + 1);
+		if(index < size())
+			return getLine(index);
+		return -1;
+	}
+
+	/**
+	 * <p>
+	 * Returns the last marked line before the line.
+	 * </p>
+	 *
+	 * @param line the line
+	 *
+	 * @return the marked line, or -1 if there is none
+	 */
+	public int previous(int line)
+	{
+		int index = indexOf(line);
+		if(index > 0)
+			return getLine(index - 1);
+		return -1;
+	}
+
+	/**
+	 * <p>
+	 * Replaces lines of the document.  The marks of the replaced lines are
+	 * removed and the marks after them are moved with their lines.
+	 * </p>
+	 *
+	 * @param start the first line replaced
+	 * @param replaced the number of lines replaced
+	 * @param added the number of lines that replace them
+	 */
+	public void replaceLines(int start, int replaced, int added)
+	{
+		int index = indexOf(start);
+		int end = indexOf(start + replaced);
+		moveGap(index);
+		Arrays.fill(values, gapEnd, gapEnd + end - index, null);
+		gapEnd += end - index;
+		lineCount += added - replaced;
+	}
+
+	private void moveGap(int index)
+	{
+		int gapLength = gapEnd - gapStart;
+		if(index < gapStart)
+		{
+			//   marks moving after the gap become relative
+			for(int i = gapStart - 1; i >= index; i--)
+			{
+				Object value = values[i];
+				values[i] = null;
+				lines[i + gapLength] = lines[i] - lineCount;
+				values[i + gapLength] = value;
+			}
+		}
+		else if(index > gapStart)
+		{
+			for(int i = gapStart; i < index; i++)
+			{
+				Object value = values[i + gapLength];
+				values[i + gapLength] = null;
+				lines[i] = lines[i + gapLength] + lineCount;
+				values[i] = value;
+			}
+		}
+		gapStart = index;
+		gapEnd = index + gapLength;
+	}
+
+	private void grow()
+	{
+		int length = lines.length * 2;
+		int tail = lines.length - gapEnd;
+		int newLines[] = Arrays.copyOf(lines, length);
+		Object newValues[] = Arrays.copyOf(values, length);
+		System.arraycopy(lines, gapEnd, newLines, length - tail, tail);
+		System.arraycopy(values, gapEnd, newValues, length - tail, tail);
+		Arrays.fill(newValues, gapStart, length - tail, null);
+		lines = newLines;
+		values = newValues;
+		gapEnd = length - tail;
+	}
+}
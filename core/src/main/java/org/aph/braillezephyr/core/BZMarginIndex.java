@@ -0,0 +1,160 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+/**
+ * <p>
+ * This class indexes the lines that have more cells than the number of
+ * characters per line.
+ * </p><p>
+ * The lines are kept in <code>BZLineMarks</code>, so after the whole
+ * document is indexed, each change only checks the lines it touched and
+ * moves the marks near it.  Finding the next or previous long line from
+ * any line is a binary search.
+ * </p>
+ *
+ * @see BZLineMarks
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZMarginIndex
+{
+	private final BZContent content;
+	private final BZLineMarks<Boolean> marks = new BZLineMarks<>();
+
+	private int charsPerLine = 40;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZMarginIndex</code> for the content.
+	 * </p>
+	 *
+	 * @param content the content to index (cannot be null)
+	 */
+	public BZMarginIndex(BZContent content)
+	{
+		this.content = content;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of characters per line and indexes every line.
+	 * </p>
+	 *
+	 * @param charsPerLine the number of characters
+	 */
+	public void setCharsPerLine(int charsPerLine)
+	{
+		this.charsPerLine = charsPerLine;
+		rebuild();
+	}
+
+	/**
+	 * <p>
+	 * Indexes every line of the content.
+	 * </p>
+	 */
+	public void rebuild()
+	{
+		int lineCount = content.getLineCount();
+		marks.clear(lineCount);
+		for(int i = 0; i < lineCount; i++)
+			check(i);
+	}
+
+	/**
+	 * <p>
+	 * Indexes the lines changed by an edit of the content, after it has
+	 * been made.
+	 * </p>
+	 *
+	 * @param startLine the first line changed
+	 * @param replacedLines the number of line delimiters replaced
+	 * @param newLines the number of line delimiters that replaced them
+	 */
+	public void textChanged(int startLine, int replacedLines, int newLines)
+	{
+		marks.replaceLines(startLine, replacedLines + 1, newLines + 1);
+		if(marks.getLineCount() != content.getLineCount())
+		{
+			rebuild();
+			return;
+		}
+
+		//   the line before may have been joined with the change
+		for(int i = Math.max(0, startLine - 1); i <= startLine + newLines && i < content.getLineCount(); i++)
+			check(i);
+	}
+
+	private void check(int index)
+	{
+		marks.set(index, BZDocument.getCellCount(content.getLine(index)) > charsPerLine ? Boolean.TRUE : null);
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of long lines.
+	 * </p>
+	 *
+	 * @return the number of lines
+	 */
+	public int size()
+	{
+		return marks.size();
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the line is long.
+	 * </p>
+	 *
+	 * @param line the index of the line
+	 *
+	 * @return whether the line has more cells than characters per line
+	 */
+	public boolean isLong(int line)
+	{
+		return marks.get(line) != null;
+	}
+
+	/**
+	 * <p>
+	 * Returns the first long line after the line.
+	 * </p>
+	 *
+	 * @param line the index of the line
+	 *
+	 * @return the index of the long line, or -1 if there is none
+	 */
+	public int next(int line)
+	{
+		return marks.next(line);
+	}
+
+	/**
+	 * <p>
+	 * Returns the last long line before the line.
+	 * </p>
+	 *
+	 * @param line the index of the line
+	 *
+	 * @return the index of the long line, or -1 if there is none
+	 */
+	public int previous(int line)
+	{
+		return marks.previous(line);
+	}
+}
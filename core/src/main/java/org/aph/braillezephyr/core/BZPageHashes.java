@@ -0,0 +1,250 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * <p>
+ * This class keeps a hash of each page of the content, so the pages that
+ * changed since the content was saved can be found without comparing text.
+ * </p><p>
+ * Pages are the same as in <code>BZDocument</code>, every lines per page
+ * lines.  A 64 bit hash of each line is kept, and the hash of a page is
+ * rolled over the hashes of its lines.  When the content changes, only the
+ * changed lines are hashed again, and the pages they are on are marked.
+ * If lines are added or removed the lines after them move to other pages,
+ * so every page after the change is marked.  Marked pages are hashed again
+ * from their line hashes when they are next needed.  When the content is
+ * saved, the page hashes are copied, so finding the changed pages later
+ * only compares one hash for each page.
+ * </p>
+ *
+ * @see BZDocument#isFirstLineOnPage(int)
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZPageHashes
+{
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final long ROLL = 0x9e3779b97f4a7c15L;
+
+	private final BZContent content;
+
+	private int linesPerPage;
+	private long lineHashes[] = new long[64];
+	private int lineCount;
+
+	private long pageHashes[] = new long[0];
+	private final BitSet dirty = new BitSet();
+	private long savedHashes[] = new long[0];
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZPageHashes</code> for the content.
+	 * </p>
+	 *
+	 * @param content the content to hash (cannot be null)
+	 */
+	public BZPageHashes(BZContent content)
+	{
+		this.content = content;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of lines per page.  If it changed every page is
+	 * hashed again, but the lines are not.
+	 * </p>
+	 *
+	 * @param linesPerPage the number of lines, or 0 for one page
+	 */
+	public void setLinesPerPage(int linesPerPage)
+	{
+		if(linesPerPage == this.linesPerPage)
+			return;
+		this.linesPerPage = linesPerPage;
+		resizePages();
+		dirty.set(0, pageHashes.length);
+	}
+
+	/**
+	 * <p>
+	 * Hashes every line of the content.
+	 * </p>
+	 */
+	public void rebuild()
+	{
+		lineCount = content.getLineCount();
+		if(lineHashes.length < lineCount)
+			lineHashes = new long[lineCount + lineCount / 2];
+		for(int i = 0; i < lineCount; i++)
+			lineHashes[i] = hashLine(content.getLine(i));
+		resizePages();
+		dirty.set(0, pageHashes.length);
+	}
+
+	/**
+	 * <p>
+	 * Hashes the lines changed by an edit of the content, after it has been
+	 * made.
+	 * </p>
+	 *
+	 * @param startLine the first line changed
+	 * @param replacedLines the number of line delimiters replaced
+	 * @param newLines the number of line delimiters that replaced them
+	 */
+	public void textChanged(int startLine, int replacedLines, int newLines)
+	{
+		if(lineCount - replacedLines + newLines != content.getLineCount() || startLine + replacedLines >= lineCount)
+		{
+			rebuild();
+			return;
+		}
+
+		//   move the hashes of the lines after the change
+		if(newLines != replacedLines)
+		{
+			int newCount = lineCount - replacedLines + newLines;
+			if(lineHashes.length < newCount)
+				lineHashes = Arrays.copyOf(lineHashes, newCount + newCount / 2);
+			System.arraycopy(lineHashes, startLine + replacedLines + 1, lineHashes, startLine + newLines + 1, lineCount - (startLine + replacedLines + 1));
+			lineCount = newCount;
+		}
+
+		//   the line before may have been joined with the change
+		int from = Math.max(0, startLine - 1), to = Math.min(startLine + newLines, lineCount - 1);
+		for(int i = from; i <= to; i++)
+			lineHashes[i] = hashLine(content.getLine(i));
+
+		resizePages();
+		if(newLines != replacedLines)
+			dirty.set(getPage(from), pageHashes.length);
+		else
+			dirty.set(getPage(from), getPage(to) + 1);
+	}
+
+	private static long hashLine(String line)
+	{
+		long hash = FNV_OFFSET;
+		for(int i = 0; i < line.length(); i++)
+		{
+			hash ^= line.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private int getPage(int line)
+	{
+		if(linesPerPage == 0)
+			return 0;
+		return line / linesPerPage;
+	}
+
+	private void resizePages()
+	{
+		int pageCount = getPageCount();
+		if(pageCount == pageHashes.length)
+			return;
+		pageHashes = Arrays.copyOf(pageHashes, pageCount);
+		dirty.clear(pageCount, Math.max(pageCount, dirty.length()));
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of pages, the last of which may not be full.
+	 * </p>
+	 *
+	 * @return the number of pages
+	 */
+	public int getPageCount()
+	{
+		if(linesPerPage == 0)
+			return 1;
+		return (lineCount + linesPerPage - 1) / linesPerPage;
+	}
+
+	/**
+	 * <p>
+	 * Returns the hash of the page, hashing it first if it has changed.
+	 * </p>
+	 *
+	 * @param page the index of the page
+	 *
+	 * @return the hash
+	 */
+	public long getHash(int page)
+	{
+		if(dirty.get(page))
+		{
+			int start = page * linesPerPage, end = linesPerPage == 0 ? lineCount : Math.min(start + linesPerPage, lineCount);
+			long hash = FNV_OFFSET;
+			for(int i = start; i < end; i++)
+				hash = hash * ROLL + lineHashes[i];
+			pageHashes[page] = hash;
+			dirty.clear(page);
+		}
+		return pageHashes[page];
+	}
+
+	/**
+	 * <p>
+	 * Marks every page as saved.
+	 * </p>
+	 */
+	public void markSaved()
+	{
+		for(int page = dirty.nextSetBit(0); page >= 0; page = dirty.nextSetBit(page + 1))
+			getHash(page);
+		savedHashes = pageHashes.clone();
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the page has changed since the content was saved.
+	 * Pages past the end of the content when it was saved have changed.
+	 * </p>
+	 *
+	 * @param page the index of the page
+	 *
+	 * @return whether the page has changed
+	 */
+	public boolean isChanged(int page)
+	{
+		return page >= savedHashes.length || getHash(page) != savedHashes[page];
+	}
+
+	/**
+	 * <p>
+	 * Returns the pages that have changed since the content was saved.
+	 * </p>
+	 *
+	 * @return the indexes of the pages, in order
+	 */
+	public int[] getChangedPages()
+	{
+		int pageCount = getPageCount();
+		int pages[] = new int[pageCount];
+		int count = 0;
+		for(int page = 0; page < pageCount; page++)
+		if(isChanged(page))
+			pages[count++] = page;
+		return Arrays.copyOf(pages, count);
+	}
+}
@@ -0,0 +1,545 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * This class finds, and optionally replaces, text in many BRF and
+ * BrailleZephyr files.
+ * </p><p>
+ * Directories are walked for files as in <code>BZBatch</code>, and the
+ * files are searched in parallel in the same way.  When only finding, each
+ * file is mapped into memory and its bytes are searched directly as
+ * characters, so files without matches are never decoded or copied.  The
+ * page and line of each match are found in the same pass, from form feeds
+ * in BRF files and from the lines per page in BrailleZephyr files.  When
+ * replacing, the files are read into memory instead, and the matches are
+ * replaced in those same bytes, which are written atomically as the editor
+ * saves files.  The file open in the editor is always read into memory,
+ * so that no mapping of it is left to keep the editor from saving it.
+ * </p>
+ *
+ * @see BZFind
+ * @see BZBatch
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZProjectSearch
+{
+	private static final int MAX_TEXT = 80;
+
+	private final Supplier<BZFind> findSupplier;
+
+	private String replacement;
+	private File excluded;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private final AtomicInteger filesDone = new AtomicInteger();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private volatile boolean cancelled;
+	private long elapsed;
+
+	/**
+	 * <p>
+	 * A match in a file.
+	 * </p>
+	 */
+	public static final class Hit
+	{
+		/**
+		 * The page, starting at 1.
+		 */
+		public final int page;
+
+		/**
+		 * The line on the page, starting at 1.
+		 */
+		public final int line;
+
+		/**
+		 * The cell of the start of the match, starting at 1.
+		 */
+		public final int column;
+
+		/**
+		 * The text of the line.
+		 */
+		public final String text;
+
+		private Hit(int page, int line, int column, String text)
+		{
+			this.page = page;
+			this.line = line;
+			this.column = column;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * <p>
+	 * The matches in a file, or the error from searching it.
+	 * </p>
+	 */
+	public static final class FileResult
+	{
+		/**
+		 * The file.
+		 */
+		public final File file;
+
+		/**
+		 * The matches in the file, sorted by position.
+		 */
+		public final List<Hit> hits;
+
+		/**
+		 * The number of matches replaced, or -1 if none were.
+		 */
+		public final int replaced;
+
+		/**
+		 * The error, or null.
+		 */
+		public final String error;
+
+		private FileResult(File file, List<Hit> hits, int replaced, String error)
+		{
+			this.file = file;
+			this.hits = hits;
+			this.replaced = replaced;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZProjectSearch</code>.
+	 * </p>
+	 *
+	 * @param findSupplier creates what to find, once for each file, as a
+	 *                     find is used by one thread at a time
+	 */
+	public BZProjectSearch(Supplier<BZFind> findSupplier)
+	{
+		this.findSupplier = findSupplier;
+	}
+
+	/**
+	 * <p>
+	 * Sets the text to replace the matches with.
+	 * </p>
+	 *
+	 * @param replacement the text, or null to only find the matches
+	 */
+	public void setReplacement(String replacement)
+	{
+		this.replacement = replacement;
+	}
+
+	/**
+	 * <p>
+	 * Sets a file that is searched but not replaced, such as the file open
+	 * in the editor.  It is read into memory instead of mapped, as a file
+	 * that is still mapped cannot be replaced on Windows.
+	 * </p>
+	 *
+	 * @param excluded the file, or null
+	 */
+	public void setExcluded(File excluded)
+	{
+		this.excluded = excluded == null ? null : excluded.getAbsoluteFile();
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of files searched at once.
+	 * </p>
+	 *
+	 * @param threads the number of files
+	 */
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * <p>
+	 * Stops the search.  Files already being searched are finished.
+	 * </p>
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	/**
+	 * <p>
+	 * Searches the files, and the files in the directories.
+	 * </p>
+	 *
+	 * @param inputs the files and directories to search
+	 *
+	 * @return the files with matches or errors, sorted by path
+	 */
+	public List<FileResult> run(List<File> inputs)
+	{
+		long start = System.nanoTime();
+
+		List<File> files = new ArrayList<>();
+		List<FileResult> results = new ArrayList<>();
+		for(File input : inputs)
+		if(input.isDirectory())
+		{
+			try(Stream<Path> paths = Files.walk(input.toPath()))
+			{
+				paths.filter(path -> BZBatch.isBraille(path.getFileName().toString()) && Files.isRegularFile(path))
+				     .forEach(path -> files.add(path.toFile()));
+			}
+			catch(IOException | UncheckedIOException exception)
+			{
+				results.add(new FileResult(input, Collections.emptyList(), -1, exception.getMessage()));
+			}
+		}
+		else
+			files.add(input);
+
+		ExecutorService executor = BZBatch.newExecutor(threads);
+		Semaphore open = new Semaphore(threads);
+		try
+		{
+			List<Future<FileResult>> futures = new ArrayList<>(files.size());
+			for(File file : files)
+			{
+				if(cancelled)
+					break;
+				open.acquireUninterruptibly();
+				futures.add(executor.submit(() ->
+				{
+					try
+					{
+						return process(file);
+					}
+					finally
+					{
+						open.release();
+					}
+				}));
+			}
+			for(Future<FileResult> future : futures)
+			{
+				FileResult result = future.get();
+				if(result != null)
+					results.add(result);
+			}
+		}
+		catch(InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException exception)
+		{
+			results.add(new FileResult(new File(""), Collections.emptyList(), -1, exception.getCause().toString()));
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		results.sort((a, b) -> a.file.getPath().compareTo(b.file.getPath()));
+		elapsed = System.nanoTime() - start;
+		return results;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of files searched and the throughput of the last
+	 * run.
+	 * </p>
+	 *
+	 * @return the summary
+	 */
+	public String getSummary()
+	{
+		double seconds = elapsed / 1e9;
+		double megabytes = bytesRead.get() / 1048576.0;
+		return String.format(Locale.ROOT,
+		                     "Searched %d files, %.1f MB in %.3f s:  %.1f files/s, %.1f MB/s",
+		                     filesDone.get(),
+		                     megabytes,
+		                     seconds,
+		                     filesDone.get() / seconds,
+		                     megabytes / seconds);
+	}
+
+	private FileResult process(File file)
+	{
+		if(cancelled)
+			return null;
+
+		boolean isExcluded = file.getAbsoluteFile().equals(excluded);
+		boolean replacing = replacement != null && !isExcluded;
+		ByteText text;
+		List<Hit> hits;
+		try
+		{
+			text = new ByteText(read(file, replacing || isExcluded));
+			hits = search(file, text);
+		}
+		catch(IOException | RuntimeException exception)
+		{
+			filesDone.incrementAndGet();
+			return new FileResult(file, Collections.emptyList(), -1, String.valueOf(exception.getMessage()));
+		}
+		filesDone.incrementAndGet();
+		if(hits.isEmpty())
+			return null;
+
+		if(!replacing)
+			return new FileResult(file, hits, -1, null);
+		try
+		{
+			return new FileResult(file, hits, replace(file, text), null);
+		}
+		catch(IOException | RuntimeException exception)
+		{
+			return new FileResult(file, hits, -1, String.valueOf(exception.getMessage()));
+		}
+	}
+
+	/**
+	 * Files that will be replaced, or saved by the editor, are read into
+	 * memory instead of mapped, as a mapping is only released when its
+	 * buffer is collected, and a file that is still mapped cannot be
+	 * replaced on Windows.
+	 */
+	private ByteBuffer read(File file, boolean inMemory) throws IOException
+	{
+		ByteBuffer buffer;
+		if(inMemory)
+			buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		else
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		bytesRead.addAndGet(buffer.capacity());
+		return buffer;
+	}
+
+	/**
+	 * Returns where the text of the file starts, after the header of
+	 * BrailleZephyr files.
+	 */
+	private static int getTextStart(File file, ByteText text)
+	{
+		if(!BZBatch.isBZY(file.getName()))
+			return 0;
+		int lineStart = 0;
+		while(lineStart < text.length())
+		{
+			int lineEnd = lineEnd(text, lineStart);
+			boolean headerEnd = text.subSequence(lineStart, lineEnd).toString().equals("HeaderEnd");
+			lineStart = nextLine(text, lineEnd);
+			if(headerEnd)
+				return lineStart;
+		}
+		return 0;
+	}
+
+	private List<Hit> search(File file, ByteText text)
+	{
+		boolean bzy = BZBatch.isBZY(file.getName());
+
+		//   skip the header of BrailleZephyr files, and find its lines per page
+		int start = 0, linesPerPage = 0;
+		if(bzy)
+		{
+			int lineStart = 0;
+			while(lineStart < text.length())
+			{
+				int lineEnd = lineEnd(text, lineStart);
+				String line = text.subSequence(lineStart, lineEnd).toString();
+				lineStart = nextLine(text, lineEnd);
+				if(line.startsWith("LinesPerPage "))
+					linesPerPage = Integer.parseInt(line.substring(13).trim());
+				else if(line.equals("HeaderEnd"))
+				{
+					start = lineStart;
+					break;
+				}
+			}
+		}
+
+		BZFind find = findSupplier.get();
+		List<Hit> hits = new ArrayList<>();
+		int position = start, lineStart = start, lineIndex = 0, page = 1, pageLine = 0, at = start;
+		boolean afterFormFeed = false;
+		while(!cancelled && (at = find.find(text, at, text.length())) >= 0)
+		{
+			//   count the lines and pages up to the match, a form feed
+			//   may be before or after the line delimiter
+			for(; position < at; position++)
+			{
+				char c = text.charAt(position);
+				if(c == '\n' || c == '\r')
+				{
+					if(c == '\r' && position + 1 < at && text.charAt(position + 1) == '\n')
+						position++;
+					lineStart = position + 1;
+					lineIndex++;
+					if(!afterFormFeed)
+						pageLine++;
+					afterFormFeed = false;
+				}
+				else if(c == 0xc)
+				{
+					lineStart = position + 1;
+					page++;
+					pageLine = 0;
+					afterFormFeed = true;
+				}
+				else
+					afterFormFeed = false;
+			}
+
+			int column = at - lineStart + 1;
+			String line = text.subSequence(lineStart, Math.min(lineEnd(text, lineStart), lineStart + MAX_TEXT)).toString();
+			if(bzy && linesPerPage > 0)
+				hits.add(new Hit(lineIndex / linesPerPage + 1, lineIndex % linesPerPage + 1, column, line));
+			else
+				hits.add(new Hit(page, pageLine + 1, column, line));
+			at = find.getNextFrom(at);
+		}
+		return hits;
+	}
+
+	private static int lineEnd(CharSequence text, int offset)
+	{
+		while(offset < text.length() && text.charAt(offset) != '\n' && text.charAt(offset) != '\r' && text.charAt(offset) != 0xc)
+			offset++;
+		return offset;
+	}
+
+	private static int nextLine(CharSequence text, int lineEnd)
+	{
+		if(lineEnd < text.length() && text.charAt(lineEnd) == '\r')
+			lineEnd++;
+		if(lineEnd < text.length() && text.charAt(lineEnd) == '\n')
+			lineEnd++;
+		return lineEnd;
+	}
+
+	/**
+	 * The matches are replaced in the same text they were found in, and
+	 * the rest of the file is written back byte for byte.
+	 */
+	private int replace(File file, ByteText text) throws IOException
+	{
+		//   same encodings as BZFile, each byte is written as one character
+		Charset charset = BZBatch.isBZY(file.getName()) ? BZDocument.getBZYCharset(file) : StandardCharsets.US_ASCII;
+		if(!charset.newEncoder().canEncode(replacement))
+			throw new IOException("BRF files cannot hold 8-dot cells");
+		String replacementBytes = new String(replacement.getBytes(charset), StandardCharsets.ISO_8859_1);
+
+		//   matches that overlap the previous one are not replaced
+		BZFind find = findSupplier.get();
+		StringBuilder builder = new StringBuilder(text.length());
+		int start = getTextStart(file, text);
+		int end = 0, count = 0, at = start;
+		while((at = find.find(text, at, text.length())) >= 0)
+		{
+			if(at >= end)
+			{
+				builder.append(text, end, at).append(replacementBytes);
+				end = find.getEnd();
+				count++;
+			}
+			at = find.getNextFrom(at);
+		}
+		if(count == 0)
+			return 0;
+		builder.append(text, end, text.length());
+
+		BZAtomicFile.write(file, StandardCharsets.ISO_8859_1, writer -> writer.write(builder.toString()));
+		return count;
+	}
+
+	/**
+	 * <p>
+	 * The bytes of a file as characters, one for each byte, which is exact
+	 * for ASCII braille.
+	 * </p>
+	 */
+	private static final class ByteText implements CharSequence
+	{
+		private final ByteBuffer buffer;
+
+		private ByteText(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public char charAt(int index)
+		{
+			return (char)(buffer.get(index) & 0xff);
+		}
+
+		@Override
+		public int length()
+		{
+			return buffer.capacity();
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			char chars[] = new char[end - start];
+			for(int i = 0; i < chars.length; i++)
+				chars[i] = charAt(start + i);
+			return new String(chars);
+		}
+
+		@Override
+		public String toString()
+		{
+			return subSequence(0, length()).toString();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * This class searches for a regular expression.
+ * </p><p>
+ * Letters are matched without case, as with <code>BZTextFind</code>.
+ * Matches do not overlap and empty matches are skipped.  A match may be
+ * any length, so a change of the text means searching all of it again.
+ * The matcher is kept while the same text is searched.
+ * </p>
+ *
+ * @see Pattern
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZRegexFind extends BZFind
+{
+	private final Pattern pattern;
+
+	private CharSequence text;
+	private Matcher matcher;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZRegexFind</code> for the regular expression.
+	 * </p>
+	 *
+	 * @param regex the regular expression
+	 *
+	 * @throws java.util.regex.PatternSyntaxException if the expression is
+	 *         not valid
+	 */
+	public BZRegexFind(String regex)
+	{
+		pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+	}
+
+	@Override
+	public int find(CharSequence text, int from, int to)
+	{
+		if(text != this.text)
+		{
+			this.text = text;
+			matcher = pattern.matcher(text);
+		}
+		if(from >= to)
+			return -1;
+
+		//   the text around the region is seen by anchors and lookaround
+		matcher.region(Math.max(0, from), to);
+		matcher.useAnchoringBounds(false).useTransparentBounds(true);
+		while(matcher.find())
+		if(matcher.end() > matcher.start())
+		{
+			matchEnd = matcher.end();
+			return matcher.start();
+		}
+		return -1;
+	}
+
+	@Override
+	public int getMaxLength()
+	{
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public boolean isOverlapping()
+	{
+		return false;
+	}
+}
@@ -0,0 +1,226 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+/**
+ * <p>
+ * This class counts the lines, cells, paragraphs and characters of a
+ * document.
+ * </p><p>
+ * The counts are kept as totals, so after the whole text is added, a
+ * change only removes the lines it replaced and adds the lines that
+ * replaced them.  The number of pages is found from the number of lines,
+ * as the document is paginated by line.  The characters are counted for
+ * each ASCII character, the 8-dot cells are counted together, and all
+ * others but the end of paragraph mark are counted together.  Line
+ * delimiters are not counted.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZStatistics
+{
+	private final int characterCounts[] = new int[128];
+	private int lineCount, cellCount, paragraphCount, unicodeCellCount, otherCount;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZStatistics</code> with no lines.
+	 * </p>
+	 */
+	public BZStatistics(){}
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZStatistics</code> with the same counts as
+	 * <code>statistics</code>.
+	 * </p>
+	 *
+	 * @param statistics the counts to copy
+	 */
+	public BZStatistics(BZStatistics statistics)
+	{
+		System.arraycopy(statistics.characterCounts, 0, characterCounts, 0, characterCounts.length);
+		lineCount = statistics.lineCount;
+		cellCount = statistics.cellCount;
+		paragraphCount = statistics.paragraphCount;
+		unicodeCellCount = statistics.unicodeCellCount;
+		otherCount = statistics.otherCount;
+	}
+
+	/**
+	 * <p>
+	 * Adds each line of the text, which has one more line than line
+	 * delimiters.
+	 * </p>
+	 *
+	 * @param text the text to add
+	 */
+	public void addText(String text)
+	{
+		int start = 0;
+		for(int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if(c != '\r' && c != '\n')
+				continue;
+			addLine(text.substring(start, i));
+			if(c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n')
+				i++;
+			start = i + 1;
+		}
+		addLine(text.substring(start));
+	}
+
+	/**
+	 * <p>
+	 * Adds the line.
+	 * </p>
+	 *
+	 * @param line the text of the line, without its delimiter
+	 */
+	public void addLine(String line)
+	{
+		count(line, 1);
+	}
+
+	/**
+	 * <p>
+	 * Removes the line, which must have been added.
+	 * </p>
+	 *
+	 * @param line the text of the line, without its delimiter
+	 */
+	public void removeLine(String line)
+	{
+		count(line, -1);
+	}
+
+	private void count(String line, int amount)
+	{
+		lineCount += amount;
+		cellCount += BZDocument.getCellCount(line) * amount;
+		for(int i = 0; i < line.length(); i++)
+		{
+			char c = line.charAt(i);
+			if(c < 128)
+				characterCounts[c] += amount;
+			else if(c == BZDocument.PARAGRAPH_END)
+				paragraphCount += amount;
+			else if(BZDocument.isUnicodeCell(c))
+				unicodeCellCount += amount;
+			else
+				otherCount += amount;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of lines.
+	 * </p>
+	 *
+	 * @return the number of lines
+	 */
+	public int getLineCount()
+	{
+		return lineCount;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of pages.
+	 * </p>
+	 *
+	 * @param linesPerPage the number of lines on each page
+	 *
+	 * @return the number of pages
+	 */
+	public int getPageCount(int linesPerPage)
+	{
+		if(linesPerPage < 1)
+			return 1;
+		return Math.max(1, (lineCount + linesPerPage - 1) / linesPerPage);
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of cells, which does not include form feeds at the
+	 * start of lines or end of paragraph marks.
+	 * </p>
+	 *
+	 * @return the number of cells
+	 *
+	 * @see BZDocument#getCellCount(String)
+	 */
+	public int getCellCount()
+	{
+		return cellCount;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of paragraphs, which is the number of end of
+	 * paragraph marks.
+	 * </p>
+	 *
+	 * @return the number of paragraphs
+	 */
+	public int getParagraphCount()
+	{
+		return paragraphCount;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of times the ASCII character occurs.
+	 * </p>
+	 *
+	 * @param c the character, less than 128
+	 *
+	 * @return the number of times
+	 */
+	public int getCharacterCount(char c)
+	{
+		return characterCounts[c];
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of 8-dot cells, which are kept as Unicode braille.
+	 * </p>
+	 *
+	 * @return the number of cells
+	 *
+	 * @see BZDocument#isUnicodeCell(char)
+	 */
+	public int getUnicodeCellCount()
+	{
+		return unicodeCellCount;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of characters that are not ASCII, 8-dot cells, or
+	 * end of paragraph marks.
+	 * </p>
+	 *
+	 * @return the number of characters
+	 */
+	public int getOtherCount()
+	{
+		return otherCount;
+	}
+}
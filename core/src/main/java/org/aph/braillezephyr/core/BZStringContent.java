@@ -0,0 +1,282 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+/**
+ * <p>
+ * This class is text content that does not need a display.
+ * </p><p>
+ * The characters are kept in a gap buffer, so edits near each other only
+ * move the characters between them.  The offsets of the lines are kept in
+ * a second gap buffer at the line being edited.  Offsets of lines before
+ * the gap are from the start of the text and offsets of lines after it are
+ * from the end, so edits do not need to update the lines after them.
+ * </p><p>
+ * As with SWT, lines are delimited by &quot;\r\n&quot;, &quot;\n&quot;
+ * or &quot;\r&quot;.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public class BZStringContent implements BZContent
+{
+	private char chars[];
+	private int gapStart, gapEnd;
+
+	private int lines[];
+	private int lineGapStart, lineGapEnd;
+
+	/**
+	 * <p>
+	 * Creates a new empty <code>BZStringContent</code>.
+	 * </p>
+	 */
+	public BZStringContent()
+	{
+		this("");
+	}
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZStringContent</code> with the text.
+	 * </p>
+	 *
+	 * @param text the text
+	 */
+	public BZStringContent(String text)
+	{
+		setText(text);
+	}
+
+	@Override
+	public int getCharCount()
+	{
+		return chars.length - (gapEnd - gapStart);
+	}
+
+	@Override
+	public int getLineCount()
+	{
+		return lines.length - (lineGapEnd - lineGapStart);
+	}
+
+	/**
+	 * <p>
+	 * Returns the character at the offset.
+	 * </p>
+	 *
+	 * @param offset the offset
+	 *
+	 * @return the character
+	 */
+	public char getChar(int offset)
+	{
+		if(offset < gapStart)
+			return chars[offset];
+		return chars[offset + gapEnd - gapStart];
+	}
+
+	@Override
+	public String getLine(int index)
+	{
+		int start = getOffsetAtLine(index);
+		int end;
+		if(index + 1 < getLineCount())
+			end = getOffsetAtLine(index + 1);
+		else
+			end = getCharCount();
+		if(end > start && getChar(end - 1) == '\n')
+			end--;
+		if(end > start && getChar(end - 1) == '\r')
+			end--;
+		return getTextRange(start, end - start);
+	}
+
+	@Override
+	public int getLineAtOffset(int offset)
+	{
+		if(offset < 0 || offset > getCharCount())
+			throw new IllegalArgumentException("Invalid offset " + offset);
+
+		//   last line that starts at or before offset
+		int low = 0, high = getLineCount() - 1;
+		while(low < high)
+		{
+			int middle = (low + high + 1) >>> 1;
+			if(getOffsetAtLine(middle) <= offset)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	@Override
+	public int getOffsetAtLine(int index)
+	{
+		if(index < lineGapStart)
+			return lines[index];
+		return getCharCount() - lines[index + lineGapEnd - lineGapStart];
+	}
+
+	@Override
+	public String getTextRange(int start, int length)
+	{
+		if(start < 0 || length < 0 || start + length > getCharCount())
+			throw new IllegalArgumentException("Invalid range " + start + ", " + length);
+
+		int end = start + length;
+		if(end <= gapStart)
+			return new String(chars, start, length);
+		if(start >= gapStart)
+			return new String(chars, start + gapEnd - gapStart, length);
+		StringBuilder builder = new StringBuilder(length);
+		builder.append(chars, start, gapStart - start);
+		builder.append(chars, gapEnd, end - gapStart);
+		return builder.toString();
+	}
+
+	@Override
+	public void setText(String text)
+	{
+		int length = text.length();
+		chars = new char[length + 16];
+		text.getChars(0, length, chars, 0);
+		gapStart = length;
+		gapEnd = chars.length;
+
+		lines = new int[16];
+		lines[0] = 0;
+		lineGapStart = 1;
+		lineGapEnd = lines.length;
+		addLines(0, length);
+	}
+
+	@Override
+	public void replaceTextRange(int start, int length, String text)
+	{
+		int charCount = getCharCount();
+		if(start < 0 || length < 0 || start + length > charCount)
+			throw new IllegalArgumentException("Invalid range " + start + ", " + length);
+
+		/*   Line starts from the character before the edit to just after it
+		     are found again, which covers a "\r" before or after the edit
+		     being joined with a "\n", or being separated from one.
+		 */
+		int scanStart = Math.max(0, start - 1);
+		int firstLine = getLineAtOffset(scanStart);
+		int lastLine = getLineAtOffset(Math.min(start + length + 1, charCount));
+
+		moveLineGap(firstLine + 1);
+		lineGapEnd += lastLine - firstLine;
+
+		moveGap(start);
+		gapEnd += length;
+		int textLength = text.length();
+		ensureGap(textLength);
+		text.getChars(0, textLength, chars, gapStart);
+		gapStart += textLength;
+
+		addLines(scanStart, Math.min(start + textLength + 1, getCharCount()));
+	}
+
+	/**
+	 * <p>
+	 * Adds the starts of lines after scanStart up to and including scanEnd
+	 * at the line gap.
+	 * </p>
+	 */
+	private void addLines(int scanStart, int scanEnd)
+	{
+		int charCount = getCharCount();
+		for(int offset = scanStart; offset < scanEnd; offset++)
+		{
+			char c = getChar(offset);
+			if(c == '\n' || (c == '\r' && (offset + 1 == charCount || getChar(offset + 1) != '\n')))
+			{
+				if(lineGapStart == lineGapEnd)
+					growLineGap();
+				lines[lineGapStart++] = offset + 1;
+			}
+		}
+	}
+
+	private void moveGap(int offset)
+	{
+		if(offset < gapStart)
+		{
+			int count = gapStart - offset;
+			System.arraycopy(chars, offset, chars, gapEnd - count, count);
+			gapStart -= count;
+			gapEnd -= count;
+		}
+		else if(offset > gapStart)
+		{
+			int count = offset - gapStart;
+			System.arraycopy(chars, gapEnd, chars, gapStart, count);
+			gapStart += count;
+			gapEnd += count;
+		}
+	}
+
+	private void ensureGap(int size)
+	{
+		if(gapEnd - gapStart >= size)
+			return;
+
+		int after = chars.length - gapEnd;
+		int length = Math.max(chars.length * 2, chars.length + size + 16);
+		char grown[] = new char[length];
+		System.arraycopy(chars, 0, grown, 0, gapStart);
+		System.arraycopy(chars, gapEnd, grown, length - after, after);
+		gapEnd = length - after;
+		chars = grown;
+	}
+
+	/**
+	 * <p>
+	 * Moves the line gap to before the line, converting the offsets of the
+	 * lines that move across it.
+	 * </p>
+	 */
+	private void moveLineGap(int index)
+	{
+		int charCount = getCharCount();
+		while(lineGapStart > index)
+		{
+			lineGapStart--;
+			lineGapEnd--;
+			lines[lineGapEnd] = charCount - lines[lineGapStart];
+		}
+		while(lineGapStart < index)
+		{
+			lines[lineGapStart] = charCount - lines[lineGapEnd];
+			lineGapStart++;
+			lineGapEnd++;
+		}
+	}
+
+	private void growLineGap()
+	{
+		int after = lines.length - lineGapEnd;
+		int length = lines.length * 2;
+		int grown[] = new int[length];
+		System.arraycopy(lines, 0, grown, 0, lineGapStart);
+		System.arraycopy(lines, lineGapEnd, grown, length - after, after);
+		lineGapEnd = length - after;
+		lines = grown;
+	}
+}
@@ -0,0 +1,100 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+/**
+ * <p>
+ * This class searches for a string with the Horspool algorithm.
+ * </p><p>
+ * The skip table is indexed by the low byte of characters, which covers
+ * all of ASCII braille, and characters past it share the smallest skip of
+ * any such character in the string.  Letters are matched without case, as
+ * upper and lower case letters are the same cells.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZTextFind extends BZFind
+{
+	private final char pattern[];
+	private final int skips[] = new int[256];
+	private final int highSkip;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZTextFind</code> for the string.
+	 * </p>
+	 *
+	 * @param string the string to find, which cannot be empty
+	 */
+	public BZTextFind(String string)
+	{
+		if(string.isEmpty())
+			throw new IllegalArgumentException("empty string");
+
+		pattern = new char[string.length()];
+		for(int i = 0; i < pattern.length; i++)
+			pattern[i] = fold(string.charAt(i));
+
+		int last = pattern.length - 1;
+		int highSkip = pattern.length;
+		for(int i = 0; i < skips.length; i++)
+			skips[i] = pattern.length;
+		for(int i = 0; i < last; i++)
+		if(pattern[i] < 256)
+			skips[pattern[i]] = last - i;
+		else
+			highSkip = last - i;
+		this.highSkip = highSkip;
+	}
+
+	static char fold(char c)
+	{
+		if(c >= 'a' && c <= 'z')
+			return (char)(c - ('a' - 'A'));
+		return c;
+	}
+
+	@Override
+	public int find(CharSequence text, int from, int to)
+	{
+		int last = pattern.length - 1;
+		char lastChar = pattern[last];
+		for(int i = Math.max(0, from); i + pattern.length <= to;)
+		{
+			char c = fold(text.charAt(i + last));
+			if(c == lastChar)
+			{
+				int j = last - 1;
+				while(j >= 0 && fold(text.charAt(i + j)) == pattern[j])
+					j--;
+				if(j < 0)
+				{
+					matchEnd = i + pattern.length;
+					return i;
+				}
+			}
+			i += c < 256 ? skips[c] : highSkip;
+		}
+		return -1;
+	}
+
+	@Override
+	public int getMaxLength()
+	{
+		return pattern.length;
+	}
+}
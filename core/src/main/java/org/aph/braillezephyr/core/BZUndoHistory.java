@@ -0,0 +1,249 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * This class keeps the changes made to content so they can be undone and
+ * redone, and whether the content has changed since it was saved.
+ * </p><p>
+ * Each change is recorded as it is made, with the text that it replaced.
+ * Undoing a change returns the change to make, and making it records the
+ * opposite change, so it can be redone.  The changes that can be undone
+ * and those that can be redone are kept as two stacks, so undoing and
+ * redoing take the same time however many changes there are.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public class BZUndoHistory
+{
+	private final List<Change> undoChanges = new ArrayList<>(1000);
+	private final List<Change> redoChanges = new ArrayList<>();
+	private int saveIndex;
+	private boolean undoing, redoing;
+
+	/**
+	 * <p>
+	 * Removes all changes, and marks the content as saved.
+	 * </p>
+	 */
+	public void clear()
+	{
+		undoChanges.clear();
+		redoChanges.clear();
+		saveIndex = 0;
+		undoing = redoing = false;
+	}
+
+	/**
+	 * <p>
+	 * Marks the content as saved.
+	 * </p>
+	 */
+	public void markSaved()
+	{
+		saveIndex = undoChanges.size();
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the content has changed since it was saved.
+	 * </p>
+	 *
+	 * @return whether the content is modified
+	 */
+	public boolean isModified()
+	{
+		return saveIndex != undoChanges.size();
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of changes that can be undone.
+	 * </p>
+	 *
+	 * @return the number of changes
+	 */
+	public int getUndoCount()
+	{
+		return undoChanges.size();
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of changes that can be redone.
+	 * </p>
+	 *
+	 * @return the number of changes
+	 */
+	public int getRedoCount()
+	{
+		return redoChanges.size();
+	}
+
+	/**
+	 * <p>
+	 * Records a change that has been made to the content, with the same
+	 * values as an SWT <code>ExtendedModifyEvent</code>.
+	 * </p><p>
+	 * If the change is not from undoing or redoing, the changes that could
+	 * be redone are removed.
+	 * </p>
+	 *
+	 * @param start the offset of the change
+	 * @param length the length of the new text
+	 * @param replacedText the text that was replaced
+	 */
+	public void changed(int start, int length, String replacedText)
+	{
+		Change change = new Change(start, length, replacedText);
+		if(undoing)
+			redoChanges.add(change);
+		else if(redoing)
+			undoChanges.add(change);
+		else
+		{
+			redoChanges.clear();
+			undoChanges.add(change);
+		}
+		undoing = redoing = false;
+	}
+
+	/**
+	 * <p>
+	 * Returns the change that undoes the last change.  The change must then
+	 * be made and recorded with <code>changed</code>.
+	 * </p>
+	 *
+	 * @return the change to make, null if there is nothing to undo
+	 *
+	 * @see #changed(int, int, String)
+	 */
+	public Change undo()
+	{
+		if(undoChanges.isEmpty())
+			return null;
+		undoing = true;
+		return undoChanges.remove(undoChanges.size() - 1);
+	}
+
+	/**
+	 * <p>
+	 * Returns the change that undoes the last undo.  The change must then
+	 * be made and recorded with <code>changed</code>.
+	 * </p>
+	 *
+	 * @return the change to make, null if there is nothing to redo
+	 *
+	 * @see #changed(int, int, String)
+	 */
+	public Change redo()
+	{
+		if(redoChanges.isEmpty())
+			return null;
+		redoing = true;
+		return redoChanges.remove(redoChanges.size() - 1);
+	}
+
+	/**
+	 * <p>
+	 * Replaces text in the content and records the change.
+	 * </p>
+	 *
+	 * @param content the content to change
+	 * @param start the offset of the text to replace
+	 * @param length the length of the text to replace
+	 * @param text the new text
+	 */
+	public void replaceTextRange(BZContent content, int start, int length, String text)
+	{
+		String replacedText = content.getTextRange(start, length);
+		content.replaceTextRange(start, length, text);
+		changed(start, text.length(), replacedText);
+	}
+
+	/**
+	 * <p>
+	 * Undoes the last change to the content.
+	 * </p>
+	 *
+	 * @param content the content to change
+	 *
+	 * @return the offset after the restored text, -1 if there is nothing to
+	 *         undo
+	 */
+	public int undo(BZContent content)
+	{
+		return apply(content, undo());
+	}
+
+	/**
+	 * <p>
+	 * Undoes the last undo to the content.
+	 * </p>
+	 *
+	 * @param content the content to change
+	 *
+	 * @return the offset after the restored text, -1 if there is nothing to
+	 *         redo
+	 */
+	public int redo(BZContent content)
+	{
+		return apply(content, redo());
+	}
+
+	private int apply(BZContent content, Change change)
+	{
+		if(change == null)
+			return -1;
+		replaceTextRange(content, change.start, change.length, change.replacedText);
+		return change.start + change.replacedText.length();
+	}
+
+	/**
+	 * <p>
+	 * A change to content.
+	 * </p>
+	 */
+	public static final class Change
+	{
+		/**
+		 * The offset of the change.
+		 */
+		public final int start;
+
+		/**
+		 * The length of the text that was inserted.
+		 */
+		public final int length;
+
+		/**
+		 * The text that was replaced.
+		 */
+		public final String replacedText;
+
+		private Change(int start, int length, String replacedText)
+		{
+			this.start = start;
+			this.length = length;
+			this.replacedText = replacedText;
+		}
+	}
+}
@@ -0,0 +1,367 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>
+ * This class checks a document against its number of characters per line
+ * and lines per page.
+ * </p><p>
+ * Each line is checked for cells past the margin, characters that are not
+ * cells, form feeds that are not at the start of the line, and a line
+ * delimiter other than the document's.  Both ASCII braille and the 8-dot
+ * cells kept as Unicode braille are cells.  A form feed at the start of a
+ * line starts a page, and when the text has them the pages between them
+ * are checked for the number of lines.  Documents read from BRF files have
+ * their form feeds removed, so to check pages the text of the file must be
+ * checked as it is.
+ * </p><p>
+ * The issues of each line are kept with the line, so after the whole
+ * document is checked with <code>validate</code>, edits are checked by
+ * <code>textChanged</code> with a cost of the number of lines changed.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZValidator
+{
+	private final BZContent content;
+	private final BZLineMarks<LineIssues> marks = new BZLineMarks<>();
+
+	private int charsPerLine = 40;
+	private int linesPerPage = 25;
+	private String eol = System.getProperty("line.separator");
+	private int pageBreaks;
+
+	/**
+	 * <p>
+	 * An issue found in the document.
+	 * </p>
+	 */
+	public static final class Issue
+	{
+		public enum Type
+		{
+			LONG_LINE, SHORT_PAGE, LONG_PAGE, INVALID_CELL, STRAY_FORM_FEED, MIXED_EOL
+		}
+
+		/**
+		 * The type of the issue.
+		 */
+		public final Type type;
+
+		/**
+		 * The index of the line, from 0.
+		 */
+		public final int line;
+
+		/**
+		 * The column of the line, from 1, or 0 for the whole line or page.
+		 */
+		public final int column;
+
+		/**
+		 * The description of the issue.
+		 */
+		public final String message;
+
+		private Issue(Type type, int line, int column, String message)
+		{
+			this.type = type;
+			this.line = line;
+			this.column = column;
+			this.message = message;
+		}
+
+		/**
+		 * <p>
+		 * Returns the issue as a JSON object, with the line from 1.
+		 * </p>
+		 *
+		 * @return the JSON text
+		 */
+		public String toJson()
+		{
+			return "{ \"type\": \"" + type.name().toLowerCase(Locale.ROOT)
+			       + "\", \"line\": " + (line + 1)
+			       + ", \"column\": " + column
+			       + ", \"message\": " + jsonString(message) + " }";
+		}
+
+		@Override
+		public String toString()
+		{
+			if(column > 0)
+				return "line " + (line + 1) + ", column " + column + ":  " + message;
+			return "line " + (line + 1) + ":  " + message;
+		}
+	}
+
+	/**
+	 * The issues of a line, and whether it starts a page.
+	 */
+	private static final class LineIssues
+	{
+		private final List<Issue> issues;
+		private final boolean pageBreak;
+
+		private LineIssues(List<Issue> issues, boolean pageBreak)
+		{
+			this.issues = issues;
+			this.pageBreak = pageBreak;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZValidator</code> for the content.
+	 * </p>
+	 *
+	 * @param content the content to check (cannot be null)
+	 */
+	public BZValidator(BZContent content)
+	{
+		this.content = content;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of characters per line.
+	 * </p>
+	 *
+	 * @param charsPerLine the number of characters
+	 */
+	public void setCharsPerLine(int charsPerLine)
+	{
+		this.charsPerLine = charsPerLine;
+	}
+
+	/**
+	 * <p>
+	 * Sets the number of lines per page.
+	 * </p>
+	 *
+	 * @param linesPerPage the number of lines, or 0 to not check pages
+	 */
+	public void setLinesPerPage(int linesPerPage)
+	{
+		this.linesPerPage = linesPerPage;
+	}
+
+	/**
+	 * <p>
+	 * Sets the line delimiter that all lines should end with.
+	 * </p>
+	 *
+	 * @param eol the line delimiter, or null to not check line delimiters
+	 */
+	public void setEol(String eol)
+	{
+		this.eol = eol;
+	}
+
+	/**
+	 * <p>
+	 * Sets the settings from the document.
+	 * </p>
+	 *
+	 * @param document the document
+	 */
+	public void setFrom(BZDocument document)
+	{
+		charsPerLine = document.getCharsPerLine();
+		linesPerPage = document.getLinesPerPage();
+		eol = document.getEol();
+	}
+
+	/**
+	 * <p>
+	 * Checks every line of the content.
+	 * </p>
+	 */
+	public void validate()
+	{
+		int lineCount = content.getLineCount();
+		marks.clear(lineCount);
+		pageBreaks = 0;
+		for(int i = 0; i < lineCount; i++)
+			check(i);
+	}
+
+	/**
+	 * <p>
+	 * Checks the lines changed by an edit of the content, after it has been
+	 * made.  The line delimiters before and after the change are checked as
+	 * well, as the change may have joined them.
+	 * </p>
+	 *
+	 * @param startLine the first line changed
+	 * @param replacedLines the number of line delimiters replaced
+	 * @param newLines the number of line delimiters that replaced them
+	 */
+	public void textChanged(int startLine, int replacedLines, int newLines)
+	{
+		int index = marks.indexOf(startLine);
+		int end = marks.indexOf(startLine + replacedLines + 1);
+		for(int i = index; i < end; i++)
+		if(marks.getValue(i).pageBreak)
+			pageBreaks--;
+		marks.replaceLines(startLine, replacedLines + 1, newLines + 1);
+
+		//   delimiters such as \r and \n may have been joined
+		int lineCount = content.getLineCount();
+		if(marks.getLineCount() != lineCount)
+		{
+			validate();
+			return;
+		}
+
+		int last = Math.min(lineCount - 1, startLine + newLines + 1);
+		for(int i = Math.max(0, startLine - 1); i <= last; i++)
+			check(i);
+	}
+
+	/**
+	 * <p>
+	 * Returns the issues found, sorted by line.
+	 * </p>
+	 *
+	 * @return the issues
+	 */
+	public List<Issue> getIssues()
+	{
+		List<Issue> pageIssues = getPageIssues();
+		List<Issue> issues = new ArrayList<>(marks.size() + pageIssues.size());
+		int next = 0;
+		for(int i = 0; i < marks.size(); i++)
+		{
+			int line = marks.getLine(i);
+			while(next < pageIssues.size() && pageIssues.get(next).line <= line)
+				issues.add(pageIssues.get(next++));
+			for(Issue issue : marks.getValue(i).issues)
+				issues.add(new Issue(issue.type, line, issue.column, issue.message));
+		}
+		while(next < pageIssues.size())
+			issues.add(pageIssues.get(next++));
+		return issues;
+	}
+
+	private List<Issue> getPageIssues()
+	{
+		List<Issue> issues = new ArrayList<>();
+		if(linesPerPage < 1 || pageBreaks == 0)
+			return issues;
+
+		int start = 0;
+		for(int i = 0; i < marks.size(); i++)
+		if(marks.getValue(i).pageBreak)
+		{
+			int line = marks.getLine(i);
+			if(line > 0)
+				checkPage(issues, start, line - start, false);
+			start = line;
+		}
+		checkPage(issues, start, marks.getLineCount() - start, true);
+		return issues;
+	}
+
+	private void checkPage(List<Issue> issues, int start, int lines, boolean last)
+	{
+		if(lines > linesPerPage)
+			issues.add(new Issue(Issue.Type.LONG_PAGE, start, 0, "page has " + lines + " lines, more than " + linesPerPage));
+		else if(lines < linesPerPage && !last)
+			issues.add(new Issue(Issue.Type.SHORT_PAGE, start, 0, "page has " + lines + " lines, fewer than " + linesPerPage));
+	}
+
+	private void check(int index)
+	{
+		String line = content.getLine(index);
+		int start = 0, end = line.length();
+		boolean pageBreak = end > 0 && line.charAt(0) == 0xc;
+		if(pageBreak)
+			start = 1;
+		if(end > start && line.charAt(end - 1) == BZDocument.PARAGRAPH_END)
+			end--;
+
+		List<Issue> issues = new ArrayList<>(1);
+		int cells = BZDocument.getCellCount(line);
+		if(cells > charsPerLine)
+			issues.add(new Issue(Issue.Type.LONG_LINE, index, start + charsPerLine + 1, "line has " + cells + " cells, more than " + charsPerLine));
+
+		int formFeed = -1, invalid = -1;
+		for(int i = start; i < end; i++)
+		{
+			char c = line.charAt(i);
+			if(c == 0xc)
+			{
+				if(formFeed < 0)
+					formFeed = i;
+			}
+			else if(!BZDocument.isCell(c) && invalid < 0)
+				invalid = i;
+		}
+		if(formFeed >= 0)
+			issues.add(new Issue(Issue.Type.STRAY_FORM_FEED, index, formFeed + 1, "form feed not at the start of the line"));
+		if(invalid >= 0)
+			issues.add(new Issue(Issue.Type.INVALID_CELL, index, invalid + 1, String.format("invalid cell U+%04X", (int)line.charAt(invalid))));
+
+		if(eol != null && index < content.getLineCount() - 1)
+		{
+			int lineEnd = content.getOffsetAtLine(index) + line.length();
+			String delimiter = content.getTextRange(lineEnd, content.getOffsetAtLine(index + 1) - lineEnd);
+			if(!delimiter.equals(eol))
+				issues.add(new Issue(Issue.Type.MIXED_EOL, index, 0, "line ends with " + escape(delimiter) + ", not " + escape(eol)));
+		}
+
+		LineIssues previous = marks.get(index);
+		if(previous != null && previous.pageBreak)
+			pageBreaks--;
+		if(pageBreak)
+			pageBreaks++;
+		marks.set(index, issues.isEmpty() && !pageBreak ? null : new LineIssues(issues, pageBreak));
+	}
+
+	private static String escape(String delimiter)
+	{
+		return delimiter.replace("\r", "\\r").replace("\n", "\\n");
+	}
+
+	/**
+	 * <p>
+	 * Returns the text as a JSON string.
+	 * </p>
+	 */
+	static String jsonString(String text)
+	{
+		StringBuilder builder = new StringBuilder(text.length() + 2);
+		builder.append('"');
+		for(int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if(c == '"' || c == '\\')
+				builder.append('\\').append(c);
+			else if(c < 0x20 || c > 0x7e)
+				builder.append(String.format("\\u%04x", (int)c));
+			else
+				builder.append(c);
+		}
+		return builder.append('"').toString();
+	}
+}
@@ -0,0 +1,194 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import org.aph.braillezephyr.core.BZDocument;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.PaintListener;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.TypedListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Benchmarks for painting a view, with and without the page lines, margin
+ * and paragraph marks drawn by <code>PaintHandler</code>.
+ * </p><p>
+ * The shell is opened at the size of the screen and a single view is
+ * painted into an offscreen image, so each operation is one frame of the
+ * view.  The display is created on the benchmark thread, which SWT then
+ * requires for every call, so the state is per thread.  On Linux a virtual
+ * display such as Xvfb can be used; SWT on macOS requires the main thread,
+ * so the benchmarks cannot be run there.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BZPaintBenchmark
+{
+	private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ,;:4/";
+
+	@Param({"10KB", "1MB"})
+	public String size;
+
+	@Param({"start", "middle"})
+	public String scroll;
+
+	@Param({"braille", "ascii"})
+	public String view;
+
+	@Param({"BrailleZephyr_6s", "Monospace"})
+	public String font;
+
+	@Param({"18", "36"})
+	public int fontSize;
+
+	@Param({"3840x2160"})
+	public String screen;
+
+	@Param({"true", "false"})
+	public boolean overlay;
+
+	private Display display;
+	private Shell shell;
+	private StyledText styledText;
+	private Font viewFont;
+	private Image image;
+	private GC gc;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		display = new Display();
+		shell = new Shell(display);
+		shell.setLayout(new FillLayout());
+		String dimensions[] = screen.split("x");
+		shell.setSize(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+
+		BZStyledText bzStyledText = new BZStyledText(shell);
+		bzStyledText.loadFont(font);
+		viewFont = new Font(display, font, fontSize, SWT.NORMAL);
+		if(view.equals("braille"))
+		{
+			bzStyledText.setAsciiVisible(false);
+			bzStyledText.setBrailleFont(viewFont);
+			styledText = bzStyledText.getBrailleText();
+		}
+		else
+		{
+			bzStyledText.setBrailleVisible(false);
+			bzStyledText.setAsciiFont(viewFont);
+			styledText = bzStyledText.getAsciiText();
+		}
+		bzStyledText.setText(generate(parseSize(size)));
+
+		if(!overlay)
+		for(Listener listener : styledText.getListeners(SWT.Paint))
+		if(listener instanceof TypedListener && ((TypedListener)listener).getEventListener() instanceof PaintListener)
+			styledText.removePaintListener((PaintListener)((TypedListener)listener).getEventListener());
+
+		shell.open();
+		if(scroll.equals("middle"))
+			styledText.setTopIndex(styledText.getLineCount() / 2);
+		while(display.readAndDispatch());
+
+		Point extent = styledText.getSize();
+		image = new Image(display, extent.x, extent.y);
+		gc = new GC(image);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		gc.dispose();
+		image.dispose();
+		shell.dispose();
+		viewFont.dispose();
+		display.dispose();
+	}
+
+	@Benchmark
+	public boolean frame()
+	{
+		return styledText.print(gc);
+	}
+
+	private static int parseSize(String size)
+	{
+		if(size.endsWith("KB"))
+			return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024;
+		if(size.endsWith("MB"))
+			return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024 * 1024;
+		return Integer.parseInt(size);
+	}
+
+	/**
+	 * Lines up to the margin of 40 of random words, with a paragraph end
+	 * on about a quarter of them, so every frame has page lines and
+	 * paragraph marks to draw.
+	 */
+	private static String generate(int size)
+	{
+		Random random = new Random(1);
+		StringBuilder builder = new StringBuilder(size + 64);
+		while(builder.length() < size)
+		{
+			int lineStart = builder.length();
+			int length = 30 + random.nextInt(11);
+			while(builder.length() - lineStart < length)
+			{
+				if(builder.length() > lineStart)
+					builder.append(' ');
+				int word = 1 + random.nextInt(9);
+				for(int i = 0; i < word; i++)
+					builder.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+			}
+			if(random.nextInt(4) == 0)
+				builder.append(BZDocument.PARAGRAPH_END);
+			builder.append(System.lineSeparator());
+		}
+		return builder.toString();
+	}
+}
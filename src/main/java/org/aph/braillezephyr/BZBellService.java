@@ -0,0 +1,390 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * This class plays the bells on its own thread.
+ * </p><p>
+ * The sounds are decoded once into PCM samples in the format of a single
+ * <code>SourceDataLine</code> that is opened and started ahead of time.
+ * Ringing a bell only sets a bit in an atomic mask and unparks the bell
+ * thread, so it never blocks the caller.  The bell thread mixes all sounds
+ * that are playing, so a bell that rings while another is still playing is
+ * heard over it rather than dropped.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZBellService implements Runnable
+{
+	public static final int LINE_MARGIN = 0;
+	public static final int PAGE_MARGIN = 1;
+	public static final int LINE_END = 2;
+
+	private static final float SAMPLE_RATE = 44100;
+	private static final int CHANNELS = 2;
+	private static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, false);
+
+	/**
+	 * About 6 ms of frames are mixed and written at a time.
+	 */
+	private static final int CHUNK_FRAMES = 256;
+	private static final int VOICES = 8;
+
+	private final AtomicReferenceArray<short[]> sounds = new AtomicReferenceArray<>(3);
+	private final AtomicInteger triggers = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+
+	private volatile boolean running, lineFailed;
+	private boolean closed;
+	private SourceDataLine line;
+	private Thread thread;
+
+	//   only used by the bell thread
+	private final short voiceSounds[][] = new short[VOICES][];
+	private final int voicePositions[] = new int[VOICES];
+	private final int mix[] = new int[CHUNK_FRAMES * CHANNELS];
+	private final byte buffer[] = new byte[CHUNK_FRAMES * CHANNELS * 2];
+
+	/**
+	 * <p>
+	 * Opens and starts the line and the bell thread.
+	 * </p>
+	 *
+	 * @throws LineUnavailableException
+	 */
+	public synchronized void open() throws LineUnavailableException
+	{
+		if(line != null || closed)
+			return;
+
+		SourceDataLine line;
+		try
+		{
+			line = AudioSystem.getSourceDataLine(FORMAT);
+		}
+		catch(IllegalArgumentException exception)
+		{
+			lineFailed = true;
+			throw new LineUnavailableException(exception.getMessage());
+		}
+		try
+		{
+			line.open(FORMAT, buffer.length * 4);
+		}
+		catch(LineUnavailableException exception)
+		{
+			lineFailed = true;
+			throw exception;
+		}
+		line.start();
+		this.line = line;
+
+		running = true;
+		thread = new Thread(this, "BrailleZephyr bells");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * <p>
+	 * Stops the bell thread and closes the line.  The service cannot be
+	 * opened again.
+	 * </p>
+	 */
+	public synchronized void close()
+	{
+		closed = true;
+		if(line == null)
+			return;
+
+		running = false;
+		LockSupport.unpark(thread);
+		try
+		{
+			thread.join(1000);
+		}
+		catch(InterruptedException ignored)
+		{
+			Thread.currentThread().interrupt();
+		}
+		line.close();
+		line = null;
+		thread = null;
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the line is open for playing bells.
+	 * </p>
+	 *
+	 * @return whether the line is open
+	 */
+	public boolean isOpen()
+	{
+		return running;
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the bell can be played, which is true while the line
+	 * and sound are still being loaded.
+	 * </p>
+	 *
+	 * @param bell the bell
+	 *
+	 * @return false if the line could not be opened or the sound could not
+	 *         be loaded
+	 */
+	public boolean isAvailable(int bell)
+	{
+		return !lineFailed && (failed.get() & (1 << bell)) == 0;
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the line failed to open.
+	 * </p>
+	 *
+	 * @return whether the line failed
+	 */
+	public boolean hasLineFailed()
+	{
+		return lineFailed;
+	}
+
+	/**
+	 * <p>
+	 * Returns whether a sound has been loaded for the bell.
+	 * </p>
+	 *
+	 * @param bell the bell
+	 *
+	 * @return whether the bell has a sound
+	 */
+	public boolean hasSound(int bell)
+	{
+		return sounds.get(bell) != null;
+	}
+
+	/**
+	 * <p>
+	 * Decodes the sound from <code>inputStream</code> and uses it for the
+	 * bell.  This may be called from any thread.
+	 * </p>
+	 *
+	 * @param bell the bell
+	 * @param inputStream the stream of the sound file, which is closed
+	 *
+	 * @throws IOException
+	 * @throws UnsupportedAudioFileException
+	 */
+	public void load(int bell, InputStream inputStream) throws IOException, UnsupportedAudioFileException
+	{
+		sounds.set(bell, decode(inputStream));
+		setFailed(bell, false);
+	}
+
+	/**
+	 * <p>
+	 * Decodes the default sound from <code>inputStream</code> and uses it for
+	 * the bell, unless another sound has been loaded in the meantime.  This
+	 * may be called from any thread.
+	 * </p>
+	 *
+	 * @param bell the bell
+	 * @param inputStream the stream of the sound file, which is closed
+	 *
+	 * @throws IOException
+	 * @throws UnsupportedAudioFileException
+	 */
+	public void loadDefault(int bell, InputStream inputStream) throws IOException, UnsupportedAudioFileException
+	{
+		try
+		{
+			sounds.compareAndSet(bell, null, decode(inputStream));
+		}
+		catch(IOException | UnsupportedAudioFileException exception)
+		{
+			if(sounds.get(bell) == null)
+				setFailed(bell, true);
+			throw exception;
+		}
+	}
+
+	private void setFailed(int bell, boolean value)
+	{
+		int prev;
+		do
+			prev = failed.get();
+		while(!failed.compareAndSet(prev, value ? prev | (1 << bell) : prev & ~(1 << bell)));
+	}
+
+	/**
+	 * <p>
+	 * Rings the bell.  This returns immediately and does nothing if the bell
+	 * has no sound or the line is not open.
+	 * </p>
+	 *
+	 * @param bell the bell
+	 */
+	public void ring(int bell)
+	{
+		if(!running || sounds.get(bell) == null)
+			return;
+
+		int bit = 1 << bell;
+		int prev;
+		do
+			prev = triggers.get();
+		while(!triggers.compareAndSet(prev, prev | bit));
+		LockSupport.unpark(thread);
+	}
+
+	private static short[] decode(InputStream inputStream) throws IOException, UnsupportedAudioFileException
+	{
+		try(AudioInputStream sourceStream = AudioSystem.getAudioInputStream(inputStream))
+		{
+			AudioFormat sourceFormat = sourceStream.getFormat();
+			int channels = sourceFormat.getChannels();
+			float sampleRate = sourceFormat.getSampleRate();
+			AudioFormat pcmFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+			                                        sampleRate,
+			                                        16,
+			                                        channels,
+			                                        channels * 2,
+			                                        sampleRate,
+			                                        false);
+			byte bytes[];
+			try(AudioInputStream pcmStream = AudioSystem.getAudioInputStream(pcmFormat, sourceStream))
+			{
+				bytes = pcmStream.readAllBytes();
+			}
+			catch(IllegalArgumentException exception)
+			{
+				throw new UnsupportedAudioFileException(exception.getMessage());
+			}
+
+			//   resample to the line format, using the first two channels
+			int frames = bytes.length / (channels * 2);
+			int outFrames = (int)((long)frames * (long)SAMPLE_RATE / (long)sampleRate);
+			short samples[] = new short[outFrames * CHANNELS];
+			double step = sampleRate / SAMPLE_RATE;
+			for(int i = 0; i < outFrames; i++)
+			{
+				double at = i * step;
+				int frame = (int)at;
+				double fraction = at - frame;
+				int next = Math.min(frame + 1, frames - 1);
+				for(int channel = 0; channel < CHANNELS; channel++)
+				{
+					int source = Math.min(channel, channels - 1);
+					int a = sample(bytes, frame * channels + source);
+					int b = sample(bytes, next * channels + source);
+					samples[i * CHANNELS + channel] = (short)(a + (b - a) * fraction);
+				}
+			}
+			return samples;
+		}
+	}
+
+	private static int sample(byte bytes[], int index)
+	{
+		return (bytes[index * 2] & 0xff) | (bytes[index * 2 + 1] << 8);
+	}
+
+	private void startVoice(short sound[])
+	{
+		//   use a free voice, otherwise the one furthest along
+		int voice = 0;
+		for(int i = 0; i < VOICES; i++)
+		{
+			if(voiceSounds[i] == null)
+			{
+				voice = i;
+				break;
+			}
+			if(voicePositions[i] > voicePositions[voice])
+				voice = i;
+		}
+		voiceSounds[voice] = sound;
+		voicePositions[voice] = 0;
+	}
+
+	@Override
+	public void run()
+	{
+		while(running)
+		{
+			int pending = triggers.getAndSet(0);
+			for(int bell = 0; pending != 0; bell++, pending >>>= 1)
+			if((pending & 1) != 0)
+			{
+				short sound[] = sounds.get(bell);
+				if(sound != null)
+					startVoice(sound);
+			}
+
+			//   mix playing voices
+			boolean playing = false;
+			Arrays.fill(mix, 0);
+			for(int voice = 0; voice < VOICES; voice++)
+			{
+				short sound[] = voiceSounds[voice];
+				if(sound == null)
+					continue;
+				playing = true;
+				int position = voicePositions[voice];
+				int length = Math.min(mix.length, sound.length - position);
+				for(int i = 0; i < length; i++)
+					mix[i] += sound[position + i];
+				position += length;
+				if(position >= sound.length)
+					voiceSounds[voice] = null;
+				voicePositions[voice] = position;
+			}
+
+			if(!playing)
+			{
+				if(triggers.get() == 0)
+					LockSupport.park(this);
+				continue;
+			}
+
+			for(int i = 0; i < mix.length; i++)
+			{
+				int value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+				buffer[i * 2] = (byte)value;
+				buffer[i * 2 + 1] = (byte)(value >> 8);
+			}
+			line.write(buffer, 0, buffer.length);
+		}
+	}
+}
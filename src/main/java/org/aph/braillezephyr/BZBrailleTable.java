@@ -0,0 +1,261 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+/**
+ * <p>
+ * This class holds the lookup tables used for braille entry.
+ * </p><p>
+ * Keys are mapped to dots and dot patterns are mapped to characters through
+ * arrays that are built when the tables are set, so decoding a chord is a
+ * single array access and does not allocate.  Dot patterns that use only
+ * dots 1 through 6 are mapped through the ASCII braille table, patterns that
+ * use dots 7 or 8 are mapped to the Unicode braille block.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZBrailleTable
+{
+	/**
+	 * The default keys for dots 1 through 8.
+	 */
+	public static final String DOT_KEYS = "fdsjkla;";
+
+	/**
+	 * The default characters for the 64 six dot patterns, indexed by dots.
+	 */
+	public static final String ASCII_BRAILLE = " A1B'K2L@CIF/MSP\"E3H9O6R^DJG>NTQ,*5<-U8V.%[$+X!&;:4\\0Z7(_?W]#Y)=";
+
+	private static final char UNICODE_BRAILLE = 0x2800;
+
+	private final int keyDots[] = new int[128];
+	private final char dotChars[] = new char[256];
+	private final String dotStrings[] = new String[256];
+
+	private String dotKeys;
+	private String asciiBraille;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZBrailleTable</code> with the default keys and
+	 * ASCII braille table.
+	 * </p>
+	 */
+	public BZBrailleTable()
+	{
+		setDotKeys(DOT_KEYS);
+		setAsciiBraille(ASCII_BRAILLE);
+	}
+
+	/**
+	 * <p>
+	 * Returns the dot bit for the key, 0 if the key is not mapped to a dot.
+	 * </p>
+	 *
+	 * @param key the key code or character
+	 *
+	 * @return the dot bit
+	 */
+	public int getDot(int key)
+	{
+		if(key < 0 || key >= keyDots.length)
+			return 0;
+		return keyDots[key];
+	}
+
+	/**
+	 * <p>
+	 * Returns the character for the dot pattern.
+	 * </p>
+	 *
+	 * @param dots the dot pattern, dot 1 is bit 0
+	 *
+	 * @return the character
+	 */
+	public char getChar(int dots)
+	{
+		return dotChars[dots & 0xff];
+	}
+
+	String getString(int dots)
+	{
+		return dotStrings[dots & 0xff];
+	}
+
+	/**
+	 * <p>
+	 * Returns the keys used for dots 1 through 8.
+	 * </p>
+	 *
+	 * @return the current keys
+	 *
+	 * @see #setDotKeys(String)
+	 */
+	public String getDotKeys()
+	{
+		return dotKeys;
+	}
+
+	/**
+	 * <p>
+	 * Sets the keys used for the dots, the first character is the key for
+	 * dot 1, the second for dot 2, and so on.
+	 * </p><p>
+	 * Either six or eight keys may be given.  If only six are given then
+	 * dots 7 and 8 are not entered.
+	 * </p>
+	 *
+	 * @param dotKeys the new keys
+	 *
+	 * @return false if the keys are invalid, the current keys are unchanged
+	 *
+	 * @see #getDotKeys()
+	 */
+	public boolean setDotKeys(String dotKeys)
+	{
+		if(getDotKeysError(dotKeys) != null)
+			return false;
+
+		int keyDots[] = new int[this.keyDots.length];
+		for(int i = 0; i < dotKeys.length(); i++)
+		{
+			char key = Character.toLowerCase(dotKeys.charAt(i));
+			keyDots[key] = 1 << i;
+
+			//   caps lock or shift should not change the dot
+			char upper = Character.toUpperCase(key);
+			if(upper != key && upper < keyDots.length)
+				keyDots[upper] = 1 << i;
+		}
+
+		System.arraycopy(keyDots, 0, this.keyDots, 0, keyDots.length);
+		this.dotKeys = dotKeys;
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Returns why the keys cannot be used for the dots.
+	 * </p>
+	 *
+	 * @param dotKeys the keys
+	 *
+	 * @return the problem with the keys, or null if they are valid
+	 *
+	 * @see #setDotKeys(String)
+	 */
+	public static String getDotKeysError(String dotKeys)
+	{
+		if(dotKeys.length() != 6 && dotKeys.length() != 8)
+			return "6 or 8 keys are needed, not " + dotKeys.length();
+
+		for(int i = 0; i < dotKeys.length(); i++)
+		{
+			char key = Character.toLowerCase(dotKeys.charAt(i));
+			if(key <= ' ' || key > '~')
+				return "The key for dot " + (i + 1) + " is not a printable ASCII character";
+			for(int j = 0; j < i; j++)
+			if(Character.toLowerCase(dotKeys.charAt(j)) == key)
+				return "The key " + key + " is used for both dot " + (j + 1) + " and dot " + (i + 1);
+		}
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Returns the characters for the 64 six dot patterns.
+	 * </p>
+	 *
+	 * @return the current table
+	 *
+	 * @see #setAsciiBraille(String)
+	 */
+	public String getAsciiBraille()
+	{
+		return asciiBraille;
+	}
+
+	/**
+	 * <p>
+	 * Sets the characters for the 64 six dot patterns, indexed by dots.
+	 * </p>
+	 *
+	 * @param asciiBraille the new table
+	 *
+	 * @return false if the table is invalid, the current table is unchanged
+	 *
+	 * @see #getAsciiBraille()
+	 */
+	public boolean setAsciiBraille(String asciiBraille)
+	{
+		if(getAsciiBrailleError(asciiBraille) != null)
+			return false;
+
+		for(int dots = 0; dots < dotChars.length; dots++)
+		{
+			if(dots < 64)
+				dotChars[dots] = asciiBraille.charAt(dots);
+			else
+				dotChars[dots] = (char)(UNICODE_BRAILLE | dots);
+			dotStrings[dots] = Character.toString(dotChars[dots]);
+		}
+
+		this.asciiBraille = asciiBraille;
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Returns why the table cannot be used for the six dot patterns.  Each
+	 * pattern needs its own printable ASCII character, so that the text can
+	 * be saved as BRF and read back as the same cells.
+	 * </p>
+	 *
+	 * @param asciiBraille the table
+	 *
+	 * @return the problem with the table, or null if it is valid
+	 *
+	 * @see #setAsciiBraille(String)
+	 */
+	public static String getAsciiBrailleError(String asciiBraille)
+	{
+		if(asciiBraille.length() != 64)
+			return "64 characters are needed, not " + asciiBraille.length();
+
+		for(int dots = 0; dots < 64; dots++)
+		{
+			char c = asciiBraille.charAt(dots);
+			if(c < ' ' || c > '~')
+				return "The character for dots " + getDotNumbers(dots) + " is not a printable ASCII character";
+			int first = asciiBraille.indexOf(c);
+			if(first < dots)
+				return "The character " + c + " is used for both dots " + getDotNumbers(first) + " and dots " + getDotNumbers(dots);
+		}
+		return null;
+	}
+
+	private static String getDotNumbers(int dots)
+	{
+		if(dots == 0)
+			return "0";
+		StringBuilder builder = new StringBuilder(8);
+		for(int i = 0; i < 8; i++)
+		if((dots & 1 << i) != 0)
+			builder.append(i + 1);
+		return builder.toString();
+	}
+}
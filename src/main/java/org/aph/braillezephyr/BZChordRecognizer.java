@@ -0,0 +1,229 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+/**
+ * <p>
+ * This class groups dot key presses and releases into chords.
+ * </p><p>
+ * A chord is built from the dots pressed until the first dot is released.
+ * A dot pressed after that starts the next chord, unless it is pressed
+ * within the chord window of the first press, which allows for keys that
+ * are not pressed and released quite together.  Keys still held from a
+ * completed chord are ignored when they are released, so rolling from one
+ * chord to the next does not merge or split them.
+ * </p><p>
+ * Times are in milliseconds and may wrap, as with SWT event times.
+ * Completed chords are queued in a small ring buffer that is drained by
+ * the caller.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZChordRecognizer
+{
+	private final int chords[] = new int[16];
+	private int head, tail;
+
+	private int window = 50;
+	private int down, stale, chord;
+	private int pressTime;
+	private boolean latched;
+	private int events;
+
+	/**
+	 * <p>
+	 * Returns the time window for grouping dots into a chord.
+	 * </p>
+	 *
+	 * @return the current window in milliseconds
+	 *
+	 * @see #setWindow(int)
+	 */
+	public int getWindow()
+	{
+		return window;
+	}
+
+	/**
+	 * <p>
+	 * Sets the time window for grouping dots into a chord.  Dots pressed
+	 * within the window of the first dot of a chord are part of the chord
+	 * even if a dot has already been released.
+	 * </p>
+	 *
+	 * @param window the new window in milliseconds
+	 *
+	 * @see #getWindow()
+	 */
+	public void setWindow(int window)
+	{
+		if(window < 0)
+			window = 0;
+		this.window = window;
+	}
+
+	/**
+	 * <p>
+	 * Records dots being pressed.
+	 * </p>
+	 *
+	 * @param dots the dots pressed
+	 * @param time the time of the press
+	 */
+	public void press(int dots, int time)
+	{
+		//   ignore key repeat
+		if(dots == 0 || (dots & ~(down | stale)) == 0)
+			return;
+		events++;
+
+		//   rolled over into the next chord
+		if(latched && time - pressTime > window)
+			complete();
+
+		if(chord == 0)
+			pressTime = time;
+		stale &= ~dots;
+		down |= dots;
+		chord |= dots;
+	}
+
+	/**
+	 * <p>
+	 * Records dots being released.
+	 * </p>
+	 *
+	 * @param dots the dots released
+	 * @param time the time of the release
+	 */
+	public void release(int dots, int time)
+	{
+		if(dots == 0)
+			return;
+		events++;
+
+		//   still held from a completed chord
+		if((stale & dots) != 0)
+		{
+			stale &= ~dots;
+			return;
+		}
+
+		if((down & dots) == 0)
+			return;
+		down &= ~dots;
+		latched = true;
+		if(down == 0)
+			complete();
+	}
+
+	/**
+	 * <p>
+	 * Completes the current chord if a dot has been released.  This is used
+	 * when the remaining releases are never reported, so the dots still
+	 * held are forgotten and their next press starts a dot again.
+	 * </p>
+	 */
+	public void flush()
+	{
+		if(!latched)
+			return;
+		complete();
+		down = stale = 0;
+	}
+
+	/**
+	 * <p>
+	 * Clears all held dots and queued chords.
+	 * </p>
+	 */
+	public void reset()
+	{
+		head = tail = 0;
+		down = stale = chord = 0;
+		latched = false;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of press and release events recorded, used to
+	 * check whether any events have occurred since.
+	 * </p>
+	 *
+	 * @return the event count
+	 */
+	public int getEventCount()
+	{
+		return events;
+	}
+
+	/**
+	 * <p>
+	 * Returns whether a chord is waiting on releases after the first.
+	 * </p>
+	 *
+	 * @return whether a chord is latched
+	 */
+	public boolean isLatched()
+	{
+		return latched;
+	}
+
+	/**
+	 * <p>
+	 * Returns whether there are completed chords in the queue.
+	 * </p>
+	 *
+	 * @return whether there are chords
+	 */
+	public boolean hasChord()
+	{
+		return head != tail;
+	}
+
+	/**
+	 * <p>
+	 * Removes and returns the next completed chord.
+	 * </p>
+	 *
+	 * @return the dots of the chord, 0 if there are none
+	 */
+	public int nextChord()
+	{
+		if(head == tail)
+			return 0;
+		int dots = chords[head & (chords.length - 1)];
+		head++;
+		return dots;
+	}
+
+	private void complete()
+	{
+		if(chord != 0)
+		{
+			//   full queue, drop the oldest
+			if(tail - head == chords.length)
+				head++;
+			chords[tail & (chords.length - 1)] = chord;
+			tail++;
+		}
+
+		stale |= down;
+		down = chord = 0;
+		latched = false;
+	}
+}
@@ -0,0 +1,368 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import org.aph.braillezephyr.core.BZDiff;
+import org.aph.braillezephyr.core.BZDocument;
+import org.aph.braillezephyr.core.BZFormatException;
+import org.aph.braillezephyr.core.BZStringContent;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.LineBackgroundEvent;
+import org.eclipse.swt.custom.LineBackgroundListener;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.events.PaintEvent;
+import org.eclipse.swt.events.PaintListener;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.SelectionListener;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * This class shows the differences between a file and the text being
+ * edited side by side.
+ * </p><p>
+ * The lines of both are compared with <code>BZDiff</code>, and the file is
+ * shown on the left and the text on the right, with blank lines added so
+ * that the lines that match are across from each other.  Changed lines are
+ * highlighted, and both sides are shown in either the braille or the ASCII
+ * font of the views and scroll together.
+ * </p>
+ *
+ * @see BZDiff
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZCompareView extends BZBase
+{
+	private final String fileName;
+	private final List<BZDiff.Change> changes;
+	private final BZDocument oldDocument, newDocument;
+
+	private Shell shell;
+	private StyledText oldText, newText;
+	private Label statusLabel;
+	private Button brailleButton, previousButton, nextButton;
+	private Color oldColor, newColor;
+
+	//   the rows of the sides that are changed, and where each change starts
+	private boolean changedRows[];
+	private int changeRows[];
+	private int current = -1;
+	private String oldAligned, newAligned;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZCompareView</code> and compares the file with
+	 * the text.
+	 * </p>
+	 *
+	 * @param bzStyledText the bzStyledText object to compare with (cannot be null)
+	 * @param fileName the name of the file to compare
+	 *
+	 * @throws IOException
+	 * @throws BZException if the file is not valid
+	 */
+	public BZCompareView(BZStyledText bzStyledText, String fileName) throws IOException, BZException
+	{
+		super(bzStyledText);
+
+		this.fileName = fileName;
+
+		oldDocument = new BZDocument(new BZStringContent(), bzStyledText.getLogWriter());
+		newDocument = bzStyledText.getDocument();
+		File file = new File(fileName);
+		Charset charset = fileName.endsWith("bzy") ? BZDocument.getBZYCharset(file) : Charset.defaultCharset();
+		try(Reader reader = new InputStreamReader(new FileInputStream(file), charset))
+		{
+			if(fileName.endsWith("bzy"))
+				oldDocument.readBZY(reader);
+			else
+				oldDocument.readBRF(reader);
+		}
+		catch(BZFormatException exception)
+		{
+			throw new BZException(exception.getMessage());
+		}
+
+		String oldLines[] = BZDiff.getLines(oldDocument.getContent());
+		String newLines[] = BZDiff.getLines(newDocument.getContent());
+		long time = System.nanoTime();
+		changes = new BZDiff(oldLines, newLines).diff();
+		time = System.nanoTime() - time;
+		logMessage("Compared " + oldLines.length + " and " + newLines.length + " lines in "
+		           + String.format("%.3f", time / 1e6) + " ms, " + changes.size() + " changes");
+
+		align(oldLines, newLines);
+	}
+
+	private void align(String oldLines[], String newLines[])
+	{
+		StringBuilder oldBuilder = new StringBuilder(65536), newBuilder = new StringBuilder(65536);
+		int rows = 0;
+		for(BZDiff.Change change : changes)
+			rows += Math.max(change.oldEnd - change.oldStart, change.newEnd - change.newStart) - (change.oldEnd - change.oldStart);
+		changedRows = new boolean[oldLines.length + rows];
+		changeRows = new int[changes.size()];
+
+		int o = 0, n = 0, row = 0, index = 0;
+		for(BZDiff.Change change : changes)
+		{
+			while(o < change.oldStart)
+			{
+				appendRow(oldBuilder, oldLines[o++], row);
+				appendRow(newBuilder, newLines[n++], row);
+				row++;
+			}
+
+			changeRows[index++] = row;
+			int length = Math.max(change.oldEnd - change.oldStart, change.newEnd - change.newStart);
+			for(int i = 0; i < length; i++)
+			{
+				appendRow(oldBuilder, o < change.oldEnd ? oldLines[o++] : "", row);
+				appendRow(newBuilder, n < change.newEnd ? newLines[n++] : "", row);
+				changedRows[row++] = true;
+			}
+		}
+		while(o < oldLines.length)
+		{
+			appendRow(oldBuilder, oldLines[o++], row);
+			appendRow(newBuilder, newLines[n++], row);
+			row++;
+		}
+
+		oldAligned = oldBuilder.toString();
+		newAligned = newBuilder.toString();
+	}
+
+	private static void appendRow(StringBuilder builder, String line, int row)
+	{
+		if(row > 0)
+			builder.append('\n');
+		builder.append(line);
+	}
+
+	/**
+	 * <p>
+	 * Opens the window showing the differences.
+	 * </p>
+	 */
+	public void open()
+	{
+		shell = new Shell(parentShell, SWT.DIALOG_TRIM | SWT.RESIZE);
+		shell.setText("Compare " + new File(fileName).getName());
+		shell.setLayout(new GridLayout(2, true));
+
+		Composite composite = new Composite(shell, SWT.NONE);
+		composite.setLayout(new GridLayout(5, false));
+		GridData gridData = new GridData(GridData.FILL_HORIZONTAL);
+		gridData.horizontalSpan = 2;
+		composite.setLayoutData(gridData);
+
+		ButtonHandler buttonHandler = new ButtonHandler();
+		statusLabel = new Label(composite, SWT.NONE);
+		statusLabel.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+		brailleButton = new Button(composite, SWT.RADIO);
+		brailleButton.setText("Braille");
+		brailleButton.setSelection(true);
+		brailleButton.addSelectionListener(buttonHandler);
+		Button asciiButton = new Button(composite, SWT.RADIO);
+		asciiButton.setText("ASCII");
+		asciiButton.addSelectionListener(buttonHandler);
+		previousButton = new Button(composite, SWT.PUSH);
+		previousButton.setText("Previous Change");
+		previousButton.addSelectionListener(buttonHandler);
+		nextButton = new Button(composite, SWT.PUSH);
+		nextButton.setText("Next Change");
+		nextButton.addSelectionListener(buttonHandler);
+
+		new Label(shell, SWT.NONE).setText(fileName);
+		new Label(shell, SWT.NONE).setText("Current text");
+
+		oldColor = new Color(parentShell.getDisplay(), 255, 224, 224);
+		newColor = new Color(parentShell.getDisplay(), 224, 255, 224);
+		oldText = newSide(oldAligned, oldColor);
+		newText = newSide(newAligned, newColor);
+		oldAligned = newAligned = null;
+		setBraille(true);
+
+		shell.addDisposeListener(new DisposeHandler());
+		shell.setSize(parentShell.getSize());
+		showStatus();
+		shell.open();
+	}
+
+	private StyledText newSide(String text, Color color)
+	{
+		StyledText styledText = new StyledText(shell, SWT.READ_ONLY | SWT.BORDER | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
+		styledText.setLayoutData(new GridData(GridData.FILL_BOTH));
+		styledText.setText(text);
+		styledText.addLineBackgroundListener(new ChangeBackgroundHandler(styledText, color));
+		styledText.addPaintListener(new ScrollHandler());
+		return styledText;
+	}
+
+	private void setBraille(boolean braille)
+	{
+		if(braille)
+		{
+			oldText.setFont(bzStyledText.getBrailleFont());
+			newText.setFont(bzStyledText.getBrailleFont());
+		}
+		else
+		{
+			oldText.setFont(bzStyledText.getAsciiFont());
+			newText.setFont(bzStyledText.getAsciiFont());
+		}
+	}
+
+	private void gotoChange(int index)
+	{
+		current = index;
+		int row = changeRows[index];
+		oldText.setTopIndex(Math.max(0, row - 2));
+		newText.setTopIndex(Math.max(0, row - 2));
+		oldText.setCaretOffset(oldText.getOffsetAtLine(row));
+		newText.setCaretOffset(newText.getOffsetAtLine(row));
+		showStatus();
+	}
+
+	private void showStatus()
+	{
+		if(changes.isEmpty())
+			statusLabel.setText("No changes");
+		else if(current < 0)
+			statusLabel.setText(changes.size() + " changes");
+		else
+		{
+			BZDiff.Change change = changes.get(current);
+			statusLabel.setText("Change " + (current + 1) + " of " + changes.size()
+			                    + ":  page " + (oldDocument.getPageAtLine(change.oldStart) + 1) + " of the file, "
+			                    + "page " + (newDocument.getPageAtLine(change.newStart) + 1) + " of the text");
+		}
+		previousButton.setEnabled(!changes.isEmpty());
+		nextButton.setEnabled(!changes.isEmpty());
+	}
+
+	private final class ButtonHandler implements SelectionListener
+	{
+		@Override
+		public void widgetSelected(SelectionEvent event)
+		{
+			if(event.widget == brailleButton)
+				setBraille(brailleButton.getSelection());
+			else if(changeRows.length == 0)
+				return;
+			else if(event.widget == nextButton)
+			{
+				//   from the top of the view if not at a change
+				int index = current + 1;
+				if(current < 0)
+				{
+					index = Arrays.binarySearch(changeRows, newText.getTopIndex());
+					if(index < 0)
+						index = -index - 1;
+				}
+				if(index >= changeRows.length)
+				{
+					parentShell.getDisplay().beep();
+					return;
+				}
+				gotoChange(index);
+			}
+			else if(event.widget == previousButton)
+			{
+				int index = current - 1;
+				if(current < 0)
+				{
+					index = Arrays.binarySearch(changeRows, newText.getTopIndex());
+					if(index < 0)
+						index = -index - 2;
+				}
+				if(index < 0)
+				{
+					parentShell.getDisplay().beep();
+					return;
+				}
+				gotoChange(index);
+			}
+		}
+
+		@Override
+		public void widgetDefaultSelected(SelectionEvent ignored){}
+	}
+
+	private final class ChangeBackgroundHandler implements LineBackgroundListener
+	{
+		private final StyledText styledText;
+		private final Color color;
+
+		private ChangeBackgroundHandler(StyledText styledText, Color color)
+		{
+			this.styledText = styledText;
+			this.color = color;
+		}
+
+		@Override
+		public void lineGetBackground(LineBackgroundEvent event)
+		{
+			int row = styledText.getLineAtOffset(event.lineOffset);
+			if(row < changedRows.length && changedRows[row])
+				event.lineBackground = color;
+		}
+	}
+
+	/**
+	 * The sides have the same number of rows, so one follows the other
+	 * when it is scrolled.
+	 */
+	private final class ScrollHandler implements PaintListener
+	{
+		@Override
+		public void paintControl(PaintEvent event)
+		{
+			StyledText source = (StyledText)event.widget, other = source == oldText ? newText : oldText;
+			if(other != null && other.getTopIndex() != source.getTopIndex())
+				other.setTopIndex(source.getTopIndex());
+		}
+	}
+
+	private final class DisposeHandler implements DisposeListener
+	{
+		@Override
+		public void widgetDisposed(DisposeEvent ignored)
+		{
+			oldColor.dispose();
+			newColor.dispose();
+		}
+	}
+}
@@ -15,16 +15,19 @@
 
 package org.aph.braillezephyr;
 
+import org.aph.braillezephyr.core.BZAtomicFile;
+import org.aph.braillezephyr.core.BZDocument;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.MessageBox;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 
 /**
@@ -80,12 +83,20 @@ public final class BZFile extends BZBase
 	{
 		try
 		{
-			FileReader fileReader = new FileReader(fileName);
 			if(fileName.endsWith("bzy"))
-				bzStyledText.readBZY(fileReader);
+			{
+				File file = new File(fileName);
+				try(Reader reader = new InputStreamReader(new FileInputStream(file), BZDocument.getBZYCharset(file)))
+				{
+					bzStyledText.readBZY(reader);
+				}
+			}
 			else
+			{
+				FileReader fileReader = new FileReader(fileName);
 				bzStyledText.readBRF(fileReader);
-			fileReader.close();
+				fileReader.close();
+			}
 			parentShell.setText(new File(fileName).getName() + " - BrailleZephyr");
 			this.fileName = fileName;
 			return true;
@@ -169,27 +180,31 @@ public final class BZFile extends BZBase
 		else
 			fileName = this.fileName;
 
-		try
+		//   BRF files are ASCII, which has no characters for 8-dot cells
+		if(!fileName.endsWith("bzy"))
 		{
-			OutputStreamWriter writer;
-
-			if(fileName.endsWith("brf"))
+			int line = bzStyledText.getDocument().getUnicodeCellLine();
+			if(line >= 0)
 			{
-				writer = new OutputStreamWriter(new FileOutputStream(fileName), Charset.forName("US-ASCII"));
-				bzStyledText.writeBRF(writer);
+				MessageBox messageBox = new MessageBox(parentShell, SWT.ICON_WARNING | SWT.OK);
+				messageBox.setMessage("Line " + (line + 1) + " has 8-dot cells, which cannot be saved to " + new File(fileName).getName()
+				                      + ".  Save as a BrailleZephyr file (.bzy) to keep them.");
+				messageBox.open();
+				return false;
 			}
+		}
+
+		//   write to a temporary file first so a failed save leaves the file as it was
+		try
+		{
+			if(fileName.endsWith("brf"))
+				BZAtomicFile.write(new File(fileName), Charset.forName("US-ASCII"), bzStyledText::writeBRF);
 			else if(fileName.endsWith("bzy"))
-			{
-				writer = new OutputStreamWriter(new FileOutputStream(fileName));
-				bzStyledText.writeBZY(writer);
-			}
+				BZAtomicFile.write(new File(fileName), BZDocument.BZY_CHARSET, bzStyledText::writeBZY);
 			else
-			{
-				writer = new OutputStreamWriter(new FileOutputStream(fileName));
-				bzStyledText.writeBRF(writer);
-			}
+				BZAtomicFile.write(new File(fileName), Charset.defaultCharset(), bzStyledText::writeBRF);
+			bzStyledText.resetChanges();
 
-			writer.close();
 			parentShell.setText(new File(fileName).getName() + " - BrailleZephyr");
 			this.fileName = fileName;
 			return true;
@@ -0,0 +1,217 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * This class extracts the fonts included with BrailleZephyr into a cache
+ * directory so that they can be loaded by the display.
+ * </p><p>
+ * The directory is in the user's cache directory for the platform and is
+ * separate for each version.  Each font is stored under the SHA-256 hash of
+ * its contents, which is read from the index written with the resources at
+ * build time, so a font is only copied the first time it is used.  A cached
+ * font is verified by its size, and a font that is being written is moved
+ * into place only when complete, so launches running at the same time do
+ * not see partial files.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZFontCache
+{
+	private static final String FONT_PATH = "/fonts/";
+	private static final String INDEX_NAME = "fonts.index";
+
+	private final File directory;
+	private final Map<String, String> hashes = new HashMap<>();
+	private final Map<String, Long> sizes = new HashMap<>();
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZFontCache</code> for the version.
+	 * </p>
+	 *
+	 * @param version the version of BrailleZephyr
+	 */
+	public BZFontCache(String version)
+	{
+		directory = findDirectory(version);
+		readIndex();
+	}
+
+	private static File findDirectory(String version)
+	{
+		String osName = System.getProperty("os.name").toLowerCase();
+		String userHome = System.getProperty("user.home");
+		File base;
+		if(osName.startsWith("windows") && System.getenv("LOCALAPPDATA") != null)
+			base = new File(System.getenv("LOCALAPPDATA"), "BrailleZephyr");
+		else if(osName.startsWith("mac"))
+			base = new File(userHome, "Library" + File.separator + "Caches" + File.separator + "BrailleZephyr");
+		else if(System.getenv("XDG_CACHE_HOME") != null)
+			base = new File(System.getenv("XDG_CACHE_HOME"), "braillezephyr");
+		else
+			base = new File(userHome, ".cache" + File.separator + "braillezephyr");
+
+		File directory = new File(base, version + File.separator + "fonts");
+		if(directory.isDirectory() || directory.mkdirs())
+			return directory;
+
+		//   home directory not writable, still keep users apart
+		base = new File(System.getProperty("java.io.tmpdir"), "braillezephyr-" + System.getProperty("user.name"));
+		return new File(base, version + File.separator + "fonts");
+	}
+
+	private void readIndex()
+	{
+		InputStream inputStream = getClass().getResourceAsStream(FONT_PATH + INDEX_NAME);
+		if(inputStream == null)
+			return;
+
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.US_ASCII)))
+		{
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				String tokens[] = line.trim().split(" ");
+				if(tokens.length != 3)
+					continue;
+				hashes.put(tokens[0], tokens[1]);
+				sizes.put(tokens[0], Long.valueOf(tokens[2]));
+			}
+		}
+		catch(IOException | NumberFormatException ignored)
+		{
+			//   fonts are hashed when extracted instead
+			hashes.clear();
+			sizes.clear();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the cache directory.
+	 * </p>
+	 *
+	 * @return the directory
+	 */
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * <p>
+	 * Returns the cached file of the font, extracting it first if it is not
+	 * in the cache.
+	 * </p>
+	 *
+	 * @param fontName the name of the font, without extension
+	 *
+	 * @return the file, or null if the font is not included with BrailleZephyr
+	 *
+	 * @throws IOException if the font could not be extracted
+	 */
+	public File getFontFile(String fontName) throws IOException
+	{
+		String hash = hashes.get(fontName);
+		if(hash != null)
+		{
+			File fontFile = new File(directory, hash + ".otf");
+			if(fontFile.length() == sizes.get(fontName))
+				return fontFile;
+		}
+
+		InputStream inputStream = getClass().getResourceAsStream(FONT_PATH + fontName + ".otf");
+		if(inputStream == null)
+			return null;
+		return extract(inputStream);
+	}
+
+	private File extract(InputStream inputStream) throws IOException
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException exception)
+		{
+			throw new IOException(exception);
+		}
+
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Unable to create " + directory.getPath());
+		Path tempPath = Files.createTempFile(directory.toPath(), "font", ".tmp");
+		try
+		{
+			try(InputStream input = inputStream;
+			    OutputStream output = Files.newOutputStream(tempPath))
+			{
+				byte buffer[] = new byte[8192];
+				int length;
+				while((length = input.read(buffer)) > 0)
+				{
+					digest.update(buffer, 0, length);
+					output.write(buffer, 0, length);
+				}
+			}
+
+			Path fontPath = directory.toPath().resolve(toHex(digest.digest()) + ".otf");
+			try
+			{
+				Files.move(tempPath, fontPath, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException ignored)
+			{
+				Files.move(tempPath, fontPath, StandardCopyOption.REPLACE_EXISTING);
+			}
+			return fontPath.toFile();
+		}
+		finally
+		{
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	private static String toHex(byte bytes[])
+	{
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes)
+		{
+			builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+			builder.append(Character.forDigit(b & 0xf, 16));
+		}
+		return builder.toString();
+	}
+}
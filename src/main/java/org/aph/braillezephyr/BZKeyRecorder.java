@@ -0,0 +1,173 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * <p>
+ * This class records the key events of both views to a file so they can be
+ * replayed by <code>BZKeyReplayer</code>.
+ * </p><p>
+ * The file starts with the magic number and version, followed by one
+ * record for each event:  a byte with the event type and view, the time
+ * since the previous event in milliseconds, the character, the key code,
+ * and the state mask.  The integers are written as variable length
+ * quantities, so most records are five or six bytes.
+ * </p>
+ *
+ * @see BZKeyReplayer
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZKeyRecorder extends BZBase implements Listener
+{
+	static final int MAGIC = 0x425a4b52;
+	static final int VERSION = 1;
+
+	static final int KEY_UP = 0x01;
+	static final int ASCII_VIEW = 0x02;
+
+	private final Display display;
+	private DataOutputStream output;
+	private int prevTime;
+	private int count;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZKeyRecorder</code> that starts recording
+	 * immediately.
+	 * </p>
+	 *
+	 * @param bzStyledText the bzStyledText object to record (cannot be null)
+	 * @param fileName the name of the file to record to
+	 *
+	 * @throws IOException
+	 */
+	public BZKeyRecorder(BZStyledText bzStyledText, String fileName) throws IOException
+	{
+		super(bzStyledText);
+
+		output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+		output.writeInt(MAGIC);
+		output.writeByte(VERSION);
+
+		display = parentShell.getDisplay();
+		display.addFilter(SWT.KeyDown, this);
+		display.addFilter(SWT.KeyUp, this);
+		logMessage("Recording keys to " + fileName);
+	}
+
+	static void writeVarInt(DataOutput output, int value) throws IOException
+	{
+		while((value & ~0x7f) != 0)
+		{
+			output.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	static int readVarInt(DataInput input) throws IOException
+	{
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7)
+		{
+			int b = input.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Invalid variable length integer");
+	}
+
+	/**
+	 * <p>
+	 * Stops recording and closes the file.
+	 * </p>
+	 */
+	public void close()
+	{
+		if(output == null)
+			return;
+
+		if(!display.isDisposed())
+		{
+			display.removeFilter(SWT.KeyDown, this);
+			display.removeFilter(SWT.KeyUp, this);
+		}
+
+		try
+		{
+			output.close();
+			logMessage("Recorded " + count + " key events");
+		}
+		catch(IOException exception)
+		{
+			logError("Unable to close key recording", exception, false);
+		}
+		output = null;
+	}
+
+	@Override
+	public void handleEvent(Event event)
+	{
+		if(output == null)
+			return;
+
+		int flags;
+		if(event.widget == bzStyledText.getBrailleText())
+			flags = 0;
+		else if(event.widget == bzStyledText.getAsciiText())
+			flags = ASCII_VIEW;
+		else
+			return;
+		if(event.type == SWT.KeyUp)
+			flags |= KEY_UP;
+
+		int delta = 0;
+		if(count > 0)
+			delta = event.time - prevTime;
+		if(delta < 0)
+			delta = 0;
+		prevTime = event.time;
+
+		try
+		{
+			output.writeByte(flags);
+			writeVarInt(output, delta);
+			writeVarInt(output, event.character);
+			writeVarInt(output, event.keyCode);
+			writeVarInt(output, event.stateMask);
+			count++;
+		}
+		catch(IOException exception)
+		{
+			logError("Unable to write key recording", exception, false);
+			close();
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class replays key events recorded by <code>BZKeyRecorder</code>.
+ * </p><p>
+ * The events are sent through the listeners of the recorded view, so they
+ * pass through the same key handling as typed keys.  They are replayed
+ * either with the recorded timing or as fast as possible.  After each event
+ * the pending events, such as paints, are dispatched, and the time until
+ * they are done is taken as the latency of the event.  For recorded timing
+ * the latency is measured from when the event was due, so it includes any
+ * delay from the user interface being busy.
+ * </p>
+ *
+ * @see BZKeyRecorder
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZKeyReplayer extends BZBase implements Runnable
+{
+	private final String fileName;
+	private final boolean maxSpeed;
+
+	private byte flags[] = new byte[1024];
+	private int times[] = new int[1024];
+	private char characters[] = new char[1024];
+	private int keyCodes[] = new int[1024];
+	private int stateMasks[] = new int[1024];
+	private int count;
+
+	private long latencies[];
+	private int index;
+	private long startTime, dueTime;
+	private Runnable whenDone;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZKeyReplayer</code> and reads the recording.
+	 * </p>
+	 *
+	 * @param bzStyledText the bzStyledText object to replay to (cannot be null)
+	 * @param fileName the name of the recording
+	 * @param maxSpeed whether to ignore the recorded timing
+	 *
+	 * @throws IOException
+	 * @throws BZException if the file is not a recording
+	 */
+	public BZKeyReplayer(BZStyledText bzStyledText, String fileName, boolean maxSpeed) throws IOException, BZException
+	{
+		super(bzStyledText);
+
+		this.fileName = fileName;
+		this.maxSpeed = maxSpeed;
+
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName))))
+		{
+			if(input.readInt() != BZKeyRecorder.MAGIC)
+				throw new BZException("Not a key recording");
+			if(input.readUnsignedByte() != BZKeyRecorder.VERSION)
+				throw new BZException("Unknown key recording version");
+
+			int time = 0;
+			while(true)
+			{
+				int flag;
+				try
+				{
+					flag = input.readUnsignedByte();
+				}
+				catch(EOFException ignored)
+				{
+					break;
+				}
+
+				if(count == times.length)
+				{
+					flags = Arrays.copyOf(flags, count * 2);
+					times = Arrays.copyOf(times, count * 2);
+					characters = Arrays.copyOf(characters, count * 2);
+					keyCodes = Arrays.copyOf(keyCodes, count * 2);
+					stateMasks = Arrays.copyOf(stateMasks, count * 2);
+				}
+
+				time += BZKeyRecorder.readVarInt(input);
+				flags[count] = (byte)flag;
+				times[count] = time;
+				characters[count] = (char)BZKeyRecorder.readVarInt(input);
+				keyCodes[count] = BZKeyRecorder.readVarInt(input);
+				stateMasks[count] = BZKeyRecorder.readVarInt(input);
+				count++;
+			}
+		}
+
+		latencies = new long[count];
+	}
+
+	/**
+	 * <p>
+	 * Starts replaying the events from the event loop.
+	 * </p>
+	 *
+	 * @param whenDone run after the report is logged, may be null
+	 */
+	public void start(Runnable whenDone)
+	{
+		this.whenDone = whenDone;
+		index = 0;
+		logMessage("Replaying " + count + " key events from " + fileName);
+		parentShell.getDisplay().asyncExec(this);
+	}
+
+	private void dispatch(int index)
+	{
+		StyledText styledText;
+		if((flags[index] & BZKeyRecorder.ASCII_VIEW) != 0)
+			styledText = bzStyledText.getAsciiText();
+		else
+			styledText = bzStyledText.getBrailleText();
+		if(!styledText.isVisible())
+			return;
+		if(!styledText.isFocusControl())
+			styledText.setFocus();
+
+		Event event = new Event();
+		event.character = characters[index];
+		event.keyCode = keyCodes[index];
+		event.stateMask = stateMasks[index];
+		event.time = times[index];
+		if((flags[index] & BZKeyRecorder.KEY_UP) != 0)
+			styledText.notifyListeners(SWT.KeyUp, event);
+		else
+			styledText.notifyListeners(SWT.KeyDown, event);
+	}
+
+	@Override
+	public void run()
+	{
+		Display display = parentShell.getDisplay();
+		if(index == 0)
+			startTime = dueTime = System.nanoTime();
+
+		if(maxSpeed)
+		{
+			while(index < count)
+			{
+				long time = System.nanoTime();
+				dispatch(index);
+				while(display.readAndDispatch());
+				latencies[index++] = System.nanoTime() - time;
+			}
+		}
+		else if(index < count)
+		{
+			dispatch(index);
+			while(display.readAndDispatch());
+			latencies[index] = System.nanoTime() - dueTime;
+			index++;
+
+			if(index < count)
+			{
+				int delay = times[index] - times[index - 1];
+				dueTime += delay * 1000000L;
+				display.timerExec(Math.max(0, (int)((dueTime - System.nanoTime()) / 1000000)), this);
+				return;
+			}
+		}
+
+		report(System.nanoTime() - startTime);
+		if(whenDone != null)
+			whenDone.run();
+	}
+
+	private void report(long elapsed)
+	{
+		long sorted[] = Arrays.copyOf(latencies, count);
+		Arrays.sort(sorted);
+		double seconds = elapsed / 1e9;
+
+		logMessage("Replayed " + count + " key events in " + String.format("%.3f", seconds) + " s, "
+		           + String.format("%.1f", count / seconds) + " events/s");
+		if(count == 0)
+			return;
+		logMessage("Latency (us):  "
+		           + "p50 " + percentile(sorted, 50) + ", "
+		           + "p90 " + percentile(sorted, 90) + ", "
+		           + "p99 " + percentile(sorted, 99) + ", "
+		           + "max " + sorted[count - 1] / 1000);
+	}
+
+	private long percentile(long sorted[], int percent)
+	{
+		int at = (int)((long)(sorted.length - 1) * percent / 100);
+		return sorted[at] / 1000;
+	}
+}
@@ -15,9 +15,20 @@
 
 package org.aph.braillezephyr;
 
+import org.aph.braillezephyr.core.BZDotFind;
+import org.aph.braillezephyr.core.BZFind;
+import org.aph.braillezephyr.core.BZProjectSearch;
+import org.aph.braillezephyr.core.BZRegexFind;
+import org.aph.braillezephyr.core.BZStatistics;
+import org.aph.braillezephyr.core.BZTextFind;
+import org.aph.braillezephyr.core.BZValidator;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.KeyEvent;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.KeyListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
@@ -28,10 +39,13 @@ import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.DirectoryDialog;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.FontDialog;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Spinner;
@@ -39,9 +53,12 @@ import org.eclipse.swt.widgets.Text;
 
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * <p>
@@ -54,6 +71,7 @@ public final class BZMenu extends BZBase
 {
 	private final BZFile bzFile;
 	private final BZSettings bzSettings;
+	private final BZSearch bzSearch;
 
 	private Menu recentFilesMenu;
 
@@ -77,6 +95,9 @@ public final class BZMenu extends BZBase
 
 		this.bzFile = bzFile;
 		this.bzSettings = bzSettings;
+		bzSearch = new BZSearch(bzStyledText);
+
+		BZStartupProfile.start("menu");
 
 		Menu menuBar = new Menu(parentShell, SWT.BAR);
 		parentShell.setMenuBar(menuBar);
@@ -86,10 +107,12 @@ public final class BZMenu extends BZBase
 
 		String mod1KeyName = "Ctrl+";
 		String mod2KeyName = "Shift+";
+		String mod3KeyName = "Alt+";
 		if(System.getProperty("os.name").toLowerCase().startsWith("mac"))
 		{
 			mod1KeyName = "⌘";
 			mod2KeyName = "⇧";
+			mod3KeyName = "⌥";
 		}
 
 		//   file menu
@@ -112,6 +135,7 @@ public final class BZMenu extends BZBase
 
 		new SaveHandler().addMenuItemTo(menu, "&Save\t" + mod1KeyName + "S", SWT.MOD1 | 's');
 		new SaveAsHandler().addMenuItemTo(menu, "Save As\t" + mod2KeyName + mod1KeyName + "O", SWT.MOD1 | SWT.MOD2 | 's');
+		new CompareHandler().addMenuItemTo(menu, "Compare With");
 		new QuitHandler().addMenuItemTo(menu, "Quit\t" + mod1KeyName + "Q", SWT.MOD1 | 'q');
 		new MenuItem(menu, SWT.SEPARATOR);
 		new LoadLineMarginBellHandler().addMenuItemTo(menu, "Load Line Margin Bell");
@@ -131,6 +155,11 @@ public final class BZMenu extends BZBase
 		new MenuItem(menu, SWT.SEPARATOR);
 		new UndoHandler().addMenuItemTo(menu, "Undo\t" + mod1KeyName + "Z", SWT.MOD1 | 'z');
 		new RedoHandler().addMenuItemTo(menu, "Redo\t" + mod2KeyName + mod1KeyName + "Z", SWT.MOD1 | SWT.MOD2 | 'z');
+		new MenuItem(menu, SWT.SEPARATOR);
+		new FindHandler(parentShell).addMenuItemTo(menu, "Find and Replace\t" + mod1KeyName + "H", SWT.MOD1 | 'h');
+		new FindNextHandler().addMenuItemTo(menu, "Find Next\tF3", SWT.F3);
+		new FindPreviousHandler().addMenuItemTo(menu, "Find Previous\t" + mod2KeyName + "F3", SWT.MOD2 | SWT.F3);
+		new FindInFilesHandler(parentShell).addMenuItemTo(menu, "Find in Files");
 
 		//   view menu
 		menu = new Menu(menuBar);
@@ -141,6 +170,10 @@ public final class BZMenu extends BZBase
 		new VisibleHandler(menu);
 		new BrailleFontHandler().addMenuItemTo(menu, "Braille Font");
 		new AsciiFontHandler().addMenuItemTo(menu, "ASCII Font");
+		new MenuItem(menu, SWT.SEPARATOR);
+		new GotoPageHandler(parentShell).addMenuItemTo(menu, "Go To Page\t" + mod1KeyName + "G", SWT.MOD1 | 'g');
+		new NextPageHandler().addMenuItemTo(menu, "Next Page\t" + mod3KeyName + "PgDn", SWT.MOD3 | SWT.PAGE_DOWN);
+		new PreviousPageHandler().addMenuItemTo(menu, "Previous Page\t" + mod3KeyName + "PgUp", SWT.MOD3 | SWT.PAGE_UP);
 
 		//   format menu
 		menu = new Menu(menuBar);
@@ -153,6 +186,10 @@ public final class BZMenu extends BZBase
 		new LineMarginBellHandler(parentShell).addMenuItemTo(menu, "Line Margin Bell", bzStyledText.getLineMarginBell() != -1);
 		new PageMarginBellHandler(parentShell).addMenuItemTo(menu, "Page Margin Bell", bzStyledText.getPageMarginBell() != -1);
 		new RewrapFromCursorHandler().addMenuItemTo(menu, "Rewrap From Cursor\t" + mod1KeyName + "F", SWT.MOD1 | 'F');
+		new ValidateHandler(parentShell).addMenuItemTo(menu, "Validate");
+		new StatisticsHandler(parentShell).addMenuItemTo(menu, "Statistics");
+		new NextMarginViolationHandler().addMenuItemTo(menu, "Next Long Line\tF8", SWT.F8);
+		new PreviousMarginViolationHandler().addMenuItemTo(menu, "Previous Long Line\t" + mod2KeyName + "F8", SWT.MOD2 | SWT.F8);
 
 		//   help menu
 		menu = new Menu(menuBar);
@@ -163,6 +200,8 @@ public final class BZMenu extends BZBase
 		new AboutHandler(parentShell).addMenuItemTo(menu, "About");
 		//TODO:  hide on non-development version
 		new LogViewerHandler(parentShell).addMenuItemTo(menu, "View Log");
+
+		BZStartupProfile.stop("menu");
 	}
 
 	/**
@@ -257,6 +296,38 @@ public final class BZMenu extends BZBase
 		}
 	}
 
+	private class CompareHandler extends BaseAction
+	{
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			FileDialog fileDialog = new FileDialog(parentShell, SWT.OPEN);
+			fileDialog.setFilterExtensions(new String[]{ "*.brf", "*.bzy", "*.brf;*.bzy", "*.*" });
+			fileDialog.setFilterNames(new String[]{ "Braille Ready Format File", "BrailleZephyr File", "Braille Files", "All Files" });
+			fileDialog.setFilterIndex(2);
+			String fileName = fileDialog.open();
+			if(fileName == null)
+				return;
+
+			try
+			{
+				new BZCompareView(bzStyledText, fileName).open();
+			}
+			catch(FileNotFoundException exception)
+			{
+				logError("Unable to open file", exception);
+			}
+			catch(IOException exception)
+			{
+				logError("Unable to read file", exception);
+			}
+			catch(BZException exception)
+			{
+				logError("Unable to read file", fileName + ":  " + exception.getMessage());
+			}
+		}
+	}
+
 	private class QuitHandler extends BaseAction
 	{
 		@Override
@@ -479,6 +550,7 @@ public final class BZMenu extends BZBase
 		@Override
 		public void widgetSelected(SelectionEvent ignored)
 		{
+			bzStyledText.loadFonts();
 			FontDialog fontDialog = new FontDialog(parentShell, SWT.OPEN);
 			fontDialog.setFontList(bzStyledText.getBrailleFont().getFontData());
 			FontData fontData = fontDialog.open();
@@ -493,6 +565,7 @@ public final class BZMenu extends BZBase
 		@Override
 		public void widgetSelected(SelectionEvent ignored)
 		{
+			bzStyledText.loadFonts();
 			FontDialog fontDialog = new FontDialog(parentShell, SWT.OPEN);
 			fontDialog.setFontList(bzStyledText.getAsciiFont().getFontData());
 			FontData fontData = fontDialog.open();
@@ -502,6 +575,516 @@ public final class BZMenu extends BZBase
 		}
 	}
 
+	private BZFind newFind(String string, boolean dots, boolean regex)
+	{
+		if(dots)
+			return new BZDotFind(string, bzStyledText.getBrailleAscii());
+		else if(regex)
+			return new BZRegexFind(string);
+		else
+			return new BZTextFind(string);
+	}
+
+	private final class FindHandler extends BaseAction
+	{
+		private final Shell parentShell;
+		private FindDialog findDialog;
+
+		private FindHandler(Shell parentShell)
+		{
+			this.parentShell = parentShell;
+		}
+
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			if(findDialog == null || findDialog.shell.isDisposed())
+				findDialog = new FindDialog(parentShell);
+			else
+				findDialog.shell.setActive();
+		}
+	}
+
+	private class FindNextHandler extends BaseAction
+	{
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			if(!bzSearch.findNext())
+				parentShell.getDisplay().beep();
+		}
+	}
+
+	private class FindPreviousHandler extends BaseAction
+	{
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			if(!bzSearch.findPrevious())
+				parentShell.getDisplay().beep();
+		}
+	}
+
+	private final class FindDialog implements SelectionListener, ModifyListener, DisposeListener
+	{
+		private final Shell shell;
+		private final Text findText, replaceText;
+		private final Button textButton, dotsButton, regexButton;
+		private final Button previousButton, nextButton, replaceButton, replaceAllButton, closeButton;
+		private final Label statusLabel;
+
+		private FindDialog(Shell parentShell)
+		{
+			shell = new Shell(parentShell, SWT.DIALOG_TRIM);
+			shell.setText("Find and Replace");
+			shell.setLayout(new GridLayout(4, true));
+			shell.addDisposeListener(this);
+
+			GridData gridData;
+
+			new Label(shell, SWT.NONE).setText("Find");
+			findText = new Text(shell, SWT.BORDER | SWT.SINGLE);
+			gridData = new GridData(GridData.FILL_HORIZONTAL);
+			gridData.horizontalSpan = 3;
+			findText.setLayoutData(gridData);
+			findText.addModifyListener(this);
+
+			new Label(shell, SWT.NONE).setText("Replace");
+			replaceText = new Text(shell, SWT.BORDER | SWT.SINGLE);
+			gridData = new GridData(GridData.FILL_HORIZONTAL);
+			gridData.horizontalSpan = 3;
+			replaceText.setLayoutData(gridData);
+
+			textButton = addButton("Text", SWT.RADIO);
+			textButton.setSelection(true);
+			dotsButton = addButton("Dots", SWT.RADIO);
+			regexButton = addButton("Regular Expression", SWT.RADIO);
+			new Label(shell, SWT.NONE);
+
+			previousButton = addButton("Previous");
+			nextButton = addButton("Next");
+			replaceButton = addButton("Replace");
+			replaceAllButton = addButton("Replace All");
+
+			statusLabel = new Label(shell, SWT.NONE);
+			gridData = new GridData(GridData.FILL_HORIZONTAL);
+			gridData.horizontalSpan = 3;
+			statusLabel.setLayoutData(gridData);
+			closeButton = addButton("Close");
+
+			String selection = bzStyledText.getCurrentText().getSelectionText();
+			if(selection.length() > 0 && selection.indexOf('\n') < 0)
+				findText.setText(selection);
+
+			shell.pack();
+			shell.open();
+		}
+
+		private Button addButton(String text)
+		{
+			return addButton(text, SWT.PUSH);
+		}
+
+		private Button addButton(String text, int style)
+		{
+			Button button = new Button(shell, style);
+			button.setText(text);
+			button.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_FILL));
+			button.addSelectionListener(this);
+			return button;
+		}
+
+		private void updateStatus()
+		{
+			if(statusLabel.isDisposed())
+				return;
+			if(bzSearch.getFind() == null)
+				statusLabel.setText("");
+			else if(bzSearch.isSearching())
+			{
+				statusLabel.setText(bzSearch.getHitCount() + " matches so far");
+				shell.getDisplay().timerExec(100, this::updateStatus);
+			}
+			else
+				statusLabel.setText(bzSearch.getHitCount() + " matches");
+		}
+
+		@Override
+		public void modifyText(ModifyEvent ignored)
+		{
+			String string = findText.getText();
+			if(string.isEmpty() || dotsButton.getSelection() && string.trim().isEmpty())
+			{
+				bzSearch.setFind(null);
+				updateStatus();
+				return;
+			}
+
+			try
+			{
+				bzSearch.setFind(newFind(string, dotsButton.getSelection(), regexButton.getSelection()));
+			}
+			catch(IllegalArgumentException exception)
+			{
+				bzSearch.setFind(null);
+				statusLabel.setText("Invalid:  " + exception.getMessage().split("\n")[0]);
+				return;
+			}
+			updateStatus();
+		}
+
+		@Override
+		public void widgetSelected(SelectionEvent event)
+		{
+			boolean found = true;
+			if(event.widget == textButton || event.widget == dotsButton || event.widget == regexButton)
+			{
+				if(((Button)event.widget).getSelection())
+					modifyText(null);
+				return;
+			}
+			else if(event.widget == previousButton)
+				found = bzSearch.findPrevious();
+			else if(event.widget == nextButton)
+				found = bzSearch.findNext();
+			else if(event.widget == replaceButton)
+				found = bzSearch.replace(replaceText.getText());
+			else if(event.widget == replaceAllButton)
+			{
+				int count = bzSearch.replaceAll(replaceText.getText());
+				if(count < 0)
+					statusLabel.setText("Still searching");
+				else
+					statusLabel.setText(count + " replaced");
+				return;
+			}
+			else if(event.widget == closeButton)
+			{
+				shell.dispose();
+				return;
+			}
+
+			if(!found)
+				shell.getDisplay().beep();
+			updateStatus();
+		}
+
+		@Override
+		public void widgetDefaultSelected(SelectionEvent ignored){}
+
+		@Override
+		public void widgetDisposed(DisposeEvent ignored)
+		{
+			bzSearch.setFind(null);
+		}
+	}
+
+	private final class FindInFilesHandler extends BaseAction
+	{
+		private final Shell parentShell;
+
+		private FindInFilesHandler(Shell parentShell)
+		{
+			this.parentShell = parentShell;
+		}
+
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			new FindInFilesDialog(parentShell);
+		}
+	}
+
+	private final class FindInFilesDialog implements SelectionListener, DisposeListener
+	{
+		private final Shell shell;
+		private final Text directoryText, findText, replaceText, resultsText;
+		private final Button browseButton, dotsButton, regexButton;
+		private final Button findButton, replaceAllButton, stopButton, closeButton;
+
+		private BZProjectSearch projectSearch;
+
+		private FindInFilesDialog(Shell parentShell)
+		{
+			shell = new Shell(parentShell, SWT.DIALOG_TRIM | SWT.RESIZE);
+			shell.setText("Find in Files");
+			shell.setLayout(new GridLayout(4, true));
+			shell.addDisposeListener(this);
+
+			GridData gridData;
+
+			new Label(shell, SWT.NONE).setText("Directory");
+			directoryText = new Text(shell, SWT.BORDER | SWT.SINGLE);
+			gridData = new GridData(GridData.FILL_HORIZONTAL);
+			gridData.horizontalSpan = 2;
+			directoryText.setLayoutData(gridData);
+			String fileName = bzFile.getFileName();
+			if(fileName != null)
+				directoryText.setText(new File(fileName).getAbsoluteFile().getParent());
+			browseButton = addButton("Browse", SWT.PUSH);
+
+			new Label(shell, SWT.NONE).setText("Find");
+			findText = new Text(shell, SWT.BORDER | SWT.SINGLE);
+			gridData = new GridData(GridData.FILL_HORIZONTAL);
+			gridData.horizontalSpan = 3;
+			findText.setLayoutData(gridData);
+
+			new Label(shell, SWT.NONE).setText("Replace");
+			replaceText = new Text(shell, SWT.BORDER | SWT.SINGLE);
+			gridData = new GridData(GridData.FILL_HORIZONTAL);
+			gridData.horizontalSpan = 3;
+			replaceText.setLayoutData(gridData);
+
+			addButton("Text", SWT.RADIO).setSelection(true);
+			dotsButton = addButton("Dots", SWT.RADIO);
+			regexButton = addButton("Regular Expression", SWT.RADIO);
+			new Label(shell, SWT.NONE);
+
+			findButton = addButton("Find", SWT.PUSH);
+			replaceAllButton = addButton("Replace All", SWT.PUSH);
+			stopButton = addButton("Stop", SWT.PUSH);
+			closeButton = addButton("Close", SWT.PUSH);
+
+			resultsText = new Text(shell, SWT.READ_ONLY | SWT.BORDER | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
+			gridData = new GridData(GridData.FILL_BOTH);
+			gridData.horizontalSpan = 4;
+			gridData.widthHint = 640;
+			gridData.heightHint = 320;
+			resultsText.setLayoutData(gridData);
+
+			shell.pack();
+			shell.open();
+		}
+
+		private Button addButton(String text, int style)
+		{
+			Button button = new Button(shell, style);
+			button.setText(text);
+			button.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_FILL));
+			button.addSelectionListener(this);
+			return button;
+		}
+
+		private void start(boolean replace)
+		{
+			if(projectSearch != null)
+				return;
+
+			File directory = new File(directoryText.getText());
+			if(!directory.isDirectory())
+			{
+				resultsText.setText("No such directory:  " + directory.getPath());
+				return;
+			}
+			String string = findText.getText();
+			boolean dots = dotsButton.getSelection(), regex = regexButton.getSelection();
+			if(string.isEmpty() || dots && string.trim().isEmpty())
+				return;
+			try
+			{
+				newFind(string, dots, regex);
+			}
+			catch(IllegalArgumentException exception)
+			{
+				resultsText.setText("Invalid:  " + exception.getMessage());
+				return;
+			}
+
+			if(replace)
+			{
+				MessageBox messageBox = new MessageBox(shell, SWT.ICON_QUESTION | SWT.YES | SWT.NO);
+				messageBox.setMessage("Replace in all files in " + directory.getPath() + "?\nThis cannot be undone.");
+				if(messageBox.open() != SWT.YES)
+					return;
+			}
+
+			BZProjectSearch projectSearch = new BZProjectSearch(() -> newFind(string, dots, regex));
+			if(replace)
+				projectSearch.setReplacement(replaceText.getText());
+			if(bzFile.getFileName() != null)
+				projectSearch.setExcluded(new File(bzFile.getFileName()));
+			this.projectSearch = projectSearch;
+			resultsText.setText("Searching " + directory.getPath());
+
+			//   the dialog may be closed before the search is done
+			Display display = shell.getDisplay();
+			Thread thread = new Thread(() ->
+			{
+				List<BZProjectSearch.FileResult> results = projectSearch.run(Collections.singletonList(directory));
+				String text = format(results, projectSearch.getSummary());
+				if(display.isDisposed())
+					return;
+				display.asyncExec(() ->
+				{
+					this.projectSearch = null;
+					if(!resultsText.isDisposed())
+						resultsText.setText(text);
+				});
+			}, "BrailleZephyr find in files");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private String format(List<BZProjectSearch.FileResult> results, String summary)
+		{
+			StringBuilder builder = new StringBuilder();
+			for(BZProjectSearch.FileResult result : results)
+			{
+				builder.append(result.file.getPath());
+				if(result.error != null)
+					builder.append(":  ERROR:  ").append(result.error);
+				else if(result.replaced >= 0)
+					builder.append(":  ").append(result.replaced).append(" replaced");
+				else
+					builder.append(":  ").append(result.hits.size()).append(" matches");
+				builder.append('\n');
+
+				int page = 0;
+				for(BZProjectSearch.Hit hit : result.hits)
+				{
+					if(hit.page != page)
+					{
+						page = hit.page;
+						builder.append("  Page ").append(page).append('\n');
+					}
+					builder.append("    Line ").append(hit.line).append(", cell ").append(hit.column).append(":  ").append(hit.text).append('\n');
+				}
+			}
+			if(results.isEmpty())
+				builder.append("No matches\n");
+			builder.append(summary).append('\n');
+			logMessage(summary);
+			return builder.toString();
+		}
+
+		@Override
+		public void widgetSelected(SelectionEvent event)
+		{
+			if(event.widget == browseButton)
+			{
+				DirectoryDialog directoryDialog = new DirectoryDialog(shell, SWT.OPEN);
+				directoryDialog.setFilterPath(directoryText.getText());
+				String directory = directoryDialog.open();
+				if(directory != null)
+					directoryText.setText(directory);
+			}
+			else if(event.widget == findButton)
+				start(false);
+			else if(event.widget == replaceAllButton)
+				start(true);
+			else if(event.widget == stopButton)
+			{
+				if(projectSearch != null)
+					projectSearch.cancel();
+			}
+			else if(event.widget == closeButton)
+				shell.dispose();
+		}
+
+		@Override
+		public void widgetDefaultSelected(SelectionEvent ignored){}
+
+		@Override
+		public void widgetDisposed(DisposeEvent ignored)
+		{
+			if(projectSearch != null)
+				projectSearch.cancel();
+		}
+	}
+
+	private final class GotoPageHandler extends BaseAction
+	{
+		private final Shell parentShell;
+
+		private GotoPageHandler(Shell parentShell)
+		{
+			this.parentShell = parentShell;
+		}
+
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			new GotoPageDialog(parentShell);
+		}
+	}
+
+	private final class GotoPageDialog implements SelectionListener, KeyListener
+	{
+		private final Shell shell;
+		private final Button okButton;
+		private final Button cancelButton;
+		private final Spinner spinner;
+
+		private GotoPageDialog(Shell parentShell)
+		{
+			shell = new Shell(parentShell, SWT.DIALOG_TRIM | SWT.APPLICATION_MODAL);
+			shell.setText("Go To Page");
+			shell.setLayout(new GridLayout(3, true));
+
+			spinner = new Spinner(shell, 0);
+			spinner.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_FILL));
+			spinner.setValues(bzStyledText.getCaretPage(), 1, bzStyledText.getPageCount(), 0, 1, 10);
+			spinner.addKeyListener(this);
+
+			okButton = new Button(shell, SWT.PUSH);
+			okButton.setText("OK");
+			okButton.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_FILL));
+			okButton.addSelectionListener(this);
+
+			cancelButton = new Button(shell, SWT.PUSH);
+			cancelButton.setText("Cancel");
+			cancelButton.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_FILL));
+			cancelButton.addSelectionListener(this);
+
+			shell.pack();
+			shell.open();
+		}
+
+		@Override
+		public void widgetSelected(SelectionEvent event)
+		{
+			if(event.widget == okButton)
+				bzStyledText.gotoPage(spinner.getSelection());
+			shell.dispose();
+		}
+
+		@Override
+		public void widgetDefaultSelected(SelectionEvent ignored){}
+
+		@Override
+		public void keyPressed(KeyEvent event)
+		{
+			if(event.keyCode == '\r' || event.keyCode == '\n')
+			{
+				bzStyledText.gotoPage(spinner.getSelection());
+				shell.dispose();
+			}
+		}
+
+		@Override
+		public void keyReleased(KeyEvent ignored){}
+	}
+
+	private class NextPageHandler extends BaseAction
+	{
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			if(!bzStyledText.nextPage())
+				parentShell.getDisplay().beep();
+		}
+	}
+
+	private class PreviousPageHandler extends BaseAction
+	{
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			if(!bzStyledText.previousPage())
+				parentShell.getDisplay().beep();
+		}
+	}
+
 	private final class LinesPerPageHandler extends BaseAction
 	{
 		private final Shell parentShell;
@@ -826,6 +1409,150 @@ public final class BZMenu extends BZBase
 		}
 	}
 
+	private class NextMarginViolationHandler extends BaseAction
+	{
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			if(!bzStyledText.nextMarginViolation())
+				parentShell.getDisplay().beep();
+		}
+	}
+
+	private class PreviousMarginViolationHandler extends BaseAction
+	{
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			if(!bzStyledText.previousMarginViolation())
+				parentShell.getDisplay().beep();
+		}
+	}
+
+	private final class ValidateHandler extends BaseAction
+	{
+		private final Shell parentShell;
+
+		private ValidateHandler(Shell parentShell)
+		{
+			this.parentShell = parentShell;
+		}
+
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			new ValidateDialog(parentShell);
+		}
+	}
+
+	private final class ValidateDialog
+	{
+		private ValidateDialog(Shell parentShell)
+		{
+			Shell dialog = new Shell(parentShell, SWT.DIALOG_TRIM | SWT.PRIMARY_MODAL);
+			dialog.setLayout(new FillLayout());
+			dialog.setText("Validation");
+
+			List<BZValidator.Issue> issues = bzStyledText.getValidationIssues();
+			StringBuilder builder = new StringBuilder();
+			if(issues.isEmpty())
+				builder.append("No issues found");
+			for(BZValidator.Issue issue : issues)
+				builder.append(issue).append('\n');
+
+			Text text = new Text(dialog, SWT.READ_ONLY | SWT.BORDER | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
+			text.setText(builder.toString());
+
+			dialog.open();
+			while(!dialog.isDisposed())
+			if(!dialog.getDisplay().readAndDispatch())
+				dialog.getDisplay().sleep();
+		}
+	}
+
+	private final class StatisticsHandler extends BaseAction
+	{
+		private final Shell parentShell;
+
+		private StatisticsHandler(Shell parentShell)
+		{
+			this.parentShell = parentShell;
+		}
+
+		@Override
+		public void widgetSelected(SelectionEvent ignored)
+		{
+			new StatisticsDialog(parentShell);
+		}
+	}
+
+	private final class StatisticsDialog
+	{
+		private StatisticsDialog(Shell parentShell)
+		{
+			Shell dialog = new Shell(parentShell, SWT.DIALOG_TRIM | SWT.PRIMARY_MODAL);
+			dialog.setLayout(new FillLayout());
+			dialog.setText("Statistics");
+
+			BZStatistics statistics = bzStyledText.getStatistics();
+			StringBuilder builder = new StringBuilder();
+			if(statistics == null)
+				builder.append("Still counting");
+			else
+			{
+				builder.append("Pages:  ").append(statistics.getPageCount(bzStyledText.getLinesPerPage())).append('\n');
+				builder.append("Lines:  ").append(statistics.getLineCount()).append('\n');
+				builder.append("Cells:  ").append(statistics.getCellCount()).append('\n');
+				builder.append("8-dot cells:  ").append(statistics.getUnicodeCellCount()).append('\n');
+				builder.append("Paragraphs:  ").append(statistics.getParagraphCount()).append('\n');
+				int changedPages[] = bzStyledText.getChangedPages();
+				builder.append("Pages changed since saved:  ");
+				if(changedPages.length == 0)
+					builder.append("none");
+				for(int i = 0; i < changedPages.length; i++)
+				{
+					//   consecutive pages as a range
+					int j = i;
+					while(j + 1 < changedPages.length && changedPages[j + 1] == changedPages[j] + 1)
+						j++;
+					if(i > 0)
+						builder.append(", ");
+					builder.append(changedPages[i] + 1);
+					if(j > i)
+						builder.append('-').append(changedPages[j] + 1);
+					i = j;
+				}
+				builder.append('\n');
+				builder.append('\n');
+				for(char c = 0; c < 128; c++)
+				{
+					int count = statistics.getCharacterCount(c);
+					if(count == 0)
+						continue;
+					if(c == ' ')
+						builder.append("space");
+					else if(c == 0xc)
+						builder.append("form feed");
+					else if(c < ' ' || c == 0x7f)
+						builder.append(String.format("0x%02x", (int)c));
+					else
+						builder.append(c);
+					builder.append(":  ").append(count).append('\n');
+				}
+				if(statistics.getOtherCount() > 0)
+					builder.append("other:  ").append(statistics.getOtherCount()).append('\n');
+			}
+
+			Text text = new Text(dialog, SWT.READ_ONLY | SWT.BORDER | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
+			text.setText(builder.toString());
+
+			dialog.open();
+			while(!dialog.isDisposed())
+			if(!dialog.getDisplay().readAndDispatch())
+				dialog.getDisplay().sleep();
+		}
+	}
+
 	private final class AboutHandler extends BaseAction
 	{
 		private final Shell parentShell;
@@ -0,0 +1,469 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import org.aph.braillezephyr.core.BZFind;
+import org.aph.braillezephyr.core.BZFindHits;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.LineStyleEvent;
+import org.eclipse.swt.custom.LineStyleListener;
+import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.custom.StyledTextContent;
+import org.eclipse.swt.custom.TextChangeListener;
+import org.eclipse.swt.custom.TextChangedEvent;
+import org.eclipse.swt.custom.TextChangingEvent;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.graphics.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * This class finds and replaces text in both views.
+ * </p><p>
+ * When the find is set, a copy of the text is searched on the search
+ * thread, and the matches are added to the hits as they are found.  The
+ * copy stops the search from inside the find when another one starts.  The
+ * views are redrawn as matches arrive, and each line only looks up its
+ * matches when it is drawn, so only the visible matches are highlighted.
+ * Setting another find cancels the search that is running.  After the
+ * search is done, changes to the text only search the text near them
+ * again.
+ * </p><p>
+ * Replace All replaces every match that does not overlap the previous
+ * one with a single change of the text, so it is undone all at once.
+ * </p>
+ *
+ * @see BZFind
+ * @see BZFindHits
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZSearch extends BZBase
+{
+	private final StyledTextContent content;
+	private final BZFindHits hits = new BZFindHits();
+	private final Color hitColor;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "BrailleZephyr search");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicInteger generation = new AtomicInteger();
+	private final AtomicBoolean redrawPending = new AtomicBoolean();
+
+	private BZFind find;
+	private volatile boolean searching;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZSearch</code> for the views.
+	 * </p>
+	 *
+	 * @param bzStyledText the bzStyledText object to search (cannot be null)
+	 */
+	public BZSearch(BZStyledText bzStyledText)
+	{
+		super(bzStyledText);
+
+		content = bzStyledText.getBrailleText().getContent();
+		hitColor = parentShell.getDisplay().getSystemColor(SWT.COLOR_YELLOW);
+
+		content.addTextChangeListener(new ContentChangeHandler());
+		parentShell.addDisposeListener(new DisposeHandler());
+		bzStyledText.getBrailleText().addLineStyleListener(new HitStyleHandler());
+		bzStyledText.getAsciiText().addLineStyleListener(new HitStyleHandler());
+	}
+
+	/**
+	 * <p>
+	 * Sets what to find and starts searching for it.
+	 * </p>
+	 *
+	 * @param find what to find, or null to stop finding
+	 */
+	public void setFind(BZFind find)
+	{
+		this.find = find;
+		search();
+	}
+
+	/**
+	 * <p>
+	 * Returns what is being found.
+	 * </p>
+	 *
+	 * @return what is being found, or null
+	 */
+	public BZFind getFind()
+	{
+		return find;
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the search is still running.
+	 * </p>
+	 *
+	 * @return whether searching
+	 */
+	public boolean isSearching()
+	{
+		return searching;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of matches found so far.
+	 * </p>
+	 *
+	 * @return the number of matches
+	 */
+	public int getHitCount()
+	{
+		return hits.size();
+	}
+
+	private void search()
+	{
+		int searchGeneration;
+		synchronized(hits)
+		{
+			searchGeneration = generation.incrementAndGet();
+			hits.clear();
+			searching = find != null;
+		}
+		redraw();
+		if(find == null)
+			return;
+
+		BZFind find = this.find;
+		SearchText text = new SearchText(content.getTextRange(0, content.getCharCount()), searchGeneration);
+		executor.execute(() ->
+		{
+			int length = text.length();
+			int start = 0;
+			try
+			{
+				while((start = find.find(text, start, length)) >= 0)
+				{
+					//   hits may have been cleared for another search
+					synchronized(hits)
+					{
+						if(generation.get() != searchGeneration)
+							return;
+						hits.add(start, find.getEnd());
+					}
+					start = find.getNextFrom(start);
+					asyncRedraw();
+				}
+			}
+			catch(CancellationException ignored)
+			{
+				return;
+			}
+			synchronized(hits)
+			{
+				if(generation.get() == searchGeneration)
+					searching = false;
+			}
+			asyncRedraw();
+		});
+	}
+
+	private void asyncRedraw()
+	{
+		if(redrawPending.getAndSet(true) || parentShell.getDisplay().isDisposed())
+			return;
+		parentShell.getDisplay().asyncExec(() ->
+		{
+			redrawPending.set(false);
+			redraw();
+		});
+	}
+
+	private void redraw()
+	{
+		if(!bzStyledText.getBrailleText().isDisposed())
+			bzStyledText.redraw();
+	}
+
+	/**
+	 * <p>
+	 * Selects the first match after the caret, or the selection if there
+	 * is one.
+	 * </p>
+	 *
+	 * @return false if there are no matches after the caret
+	 */
+	public boolean findNext()
+	{
+		StyledText styledText = bzStyledText.getCurrentText();
+		int offset = styledText.getSelection().x;
+		if(styledText.getSelection().y > offset)
+			offset++;
+		int index = hits.indexOf(offset);
+		if(index >= hits.size())
+			return false;
+		select(index);
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Selects the last match before the caret, or the selection if there is
+	 * one.
+	 * </p>
+	 *
+	 * @return false if there are no matches before the caret
+	 */
+	public boolean findPrevious()
+	{
+		StyledText styledText = bzStyledText.getCurrentText();
+		int index = hits.indexOf(styledText.getSelection().x) - 1;
+		if(index < 0)
+			return false;
+		select(index);
+		return true;
+	}
+
+	private void select(int index)
+	{
+		StyledText styledText = bzStyledText.getCurrentText();
+		styledText.setSelection(hits.getStart(index), hits.getEnd(index));
+		styledText.showSelection();
+	}
+
+	/**
+	 * <p>
+	 * Replaces the selection if it is a match, then selects the next match.
+	 * </p>
+	 *
+	 * @param replacement the text to replace the match with
+	 *
+	 * @return false if there are no more matches
+	 */
+	public boolean replace(String replacement)
+	{
+		StyledText styledText = bzStyledText.getCurrentText();
+		int start = styledText.getSelection().x;
+		int end = styledText.getSelection().y;
+		int index = hits.indexOf(start);
+		if(index < hits.size() && hits.getStart(index) == start && hits.getEnd(index) == end)
+		{
+			styledText.replaceTextRange(start, end - start, replacement);
+			styledText.setSelection(start + replacement.length());
+		}
+		return findNext();
+	}
+
+	/**
+	 * <p>
+	 * Replaces all matches that do not overlap with a single change.
+	 * </p>
+	 *
+	 * @param replacement the text to replace the matches with
+	 *
+	 * @return the number of matches replaced, or -1 if the search is still
+	 *         running
+	 */
+	public int replaceAll(String replacement)
+	{
+		if(searching)
+			return -1;
+		int size = hits.size();
+		if(size == 0)
+			return 0;
+
+		int first = hits.getStart(0);
+		int end = first, count = 0;
+		StringBuilder builder = new StringBuilder();
+		for(int i = 0; i < size; i++)
+		{
+			int start = hits.getStart(i);
+			if(start < end)
+				continue;
+			builder.append(content.getTextRange(end, start - end));
+			builder.append(replacement);
+			end = hits.getEnd(i);
+			count++;
+		}
+
+		StyledText styledText = bzStyledText.getCurrentText();
+		styledText.replaceTextRange(first, end - first, builder.toString());
+		styledText.setSelection(first + builder.length());
+		return count;
+	}
+
+	/**
+	 * <p>
+	 * Stops the search thread.
+	 * </p>
+	 */
+	public void close()
+	{
+		generation.incrementAndGet();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * <p>
+	 * The copy of the text being searched, which stops the search when
+	 * another is started.  A regular expression may run a long time without
+	 * finding a match, so this is checked as characters are read.
+	 * </p>
+	 */
+	private final class SearchText implements CharSequence
+	{
+		private final String text;
+		private final int searchGeneration;
+		private int reads;
+
+		private SearchText(String text, int searchGeneration)
+		{
+			this.text = text;
+			this.searchGeneration = searchGeneration;
+		}
+
+		@Override
+		public char charAt(int index)
+		{
+			if((++reads & 0xfff) == 0 && generation.get() != searchGeneration)
+				throw new CancellationException();
+			return text.charAt(index);
+		}
+
+		@Override
+		public int length()
+		{
+			return text.length();
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			return text.subSequence(start, end);
+		}
+
+		@Override
+		public String toString()
+		{
+			return text;
+		}
+	}
+
+	private final class DisposeHandler implements DisposeListener
+	{
+		@Override
+		public void widgetDisposed(DisposeEvent ignored)
+		{
+			close();
+		}
+	}
+
+	private final class ContentChangeHandler implements TextChangeListener
+	{
+		private int start, replacedLength, newLength;
+
+		@Override
+		public void textChanging(TextChangingEvent event)
+		{
+			start = event.start;
+			replacedLength = event.replaceCharCount;
+			newLength = event.newCharCount;
+		}
+
+		@Override
+		public void textChanged(TextChangedEvent ignored)
+		{
+			if(find == null)
+				return;
+			int maxLength = find.getMaxLength();
+			if(searching || maxLength == Integer.MAX_VALUE)
+			{
+				search();
+				return;
+			}
+
+			//   matches that could include the change are found again
+			int from = Math.max(0, start - maxLength + 1);
+			hits.removeAndMove(from, start + replacedLength, newLength - replacedLength);
+			int to = Math.min(content.getCharCount(), start + newLength + maxLength - 1);
+			String text = content.getTextRange(from, to - from);
+			int at = 0;
+			while((at = find.find(text, at, text.length())) >= 0 && from + at < start + newLength)
+			{
+				hits.add(from + at, from + find.getEnd());
+				at = find.getNextFrom(at);
+			}
+		}
+
+		@Override
+		public void textSet(TextChangedEvent ignored)
+		{
+			if(find != null)
+				search();
+		}
+	}
+
+	private final class HitStyleHandler implements LineStyleListener
+	{
+		@Override
+		public void lineGetStyle(LineStyleEvent event)
+		{
+			if(find == null || hits.size() == 0)
+				return;
+
+			//   matches may start on a previous line
+			int lineStart = event.lineOffset;
+			int lineEnd = lineStart + event.lineText.length();
+			int index = hits.indexOf(lineStart);
+			while(index > 0 && hits.getEnd(index - 1) > lineStart)
+				index--;
+
+			List<StyleRange> styles = new ArrayList<>();
+			StyleRange style = null;
+			for(; index < hits.size() && hits.getStart(index) < lineEnd; index++)
+			{
+				int start = Math.max(lineStart, hits.getStart(index));
+				int end = Math.min(lineEnd, hits.getEnd(index));
+				if(end <= start)
+					continue;
+
+				//   overlapping matches are joined
+				if(style != null && start <= style.start + style.length)
+				{
+					style.length = Math.max(style.length, end - style.start);
+					continue;
+				}
+				style = new StyleRange(start, end - start, null, hitColor);
+				styles.add(style);
+			}
+			if(!styles.isEmpty())
+				event.styles = styles.toArray(new StyleRange[0]);
+		}
+	}
+}
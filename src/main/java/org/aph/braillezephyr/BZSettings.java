@@ -73,7 +73,9 @@ public final class BZSettings extends BZBase
 		if(fileName == null)
 			fileName = System.getProperty("user.home") + File.separator + ".braillezephyr.conf";
 		file = new File(fileName);
+		BZStartupProfile.start("settings");
 		readSettings();
+		BZStartupProfile.stop("settings");
 
 		if(useSize)
 		{
@@ -175,7 +177,7 @@ public final class BZSettings extends BZBase
 		if(value.length() < 1)
 			return false;
 
-		String tokens[];
+		String tokens[], error;
 		switch(line.substring(0, offset))
 		{
 		case "size":
@@ -263,6 +265,26 @@ public final class BZSettings extends BZBase
 			}
 			break;
 
+		case "brailleDotKeys":
+
+			error = BZBrailleTable.getDotKeysError(value);
+			if(error != null)
+				logError("Invalid brailleDotKeys setting", error + " -- " + file.getPath(), false);
+			else
+				bzStyledText.setBrailleDotKeys(value);
+			break;
+
+		case "brailleAscii":
+
+			error = BZBrailleTable.getAsciiBrailleError(value);
+			if(error != null)
+				logError("Invalid brailleAscii setting", error + " -- " + file.getPath(), false);
+			else
+				bzStyledText.setBrailleAscii(value);
+			break;
+
+		case "chordWindow":  bzStyledText.setChordWindow(Integer.parseInt(value));  break;
+
 		case "brailleText.visible":  bzStyledText.setBrailleVisible(Boolean.valueOf(value));  break;
 		case "brailleText.font":
 
@@ -276,6 +298,7 @@ public final class BZSettings extends BZBase
 			tokens = value.split(" ");
 			if(tokens.length < 3)
 				return false;
+			bzStyledText.loadFont(value.substring(offset));
 			bzStyledText.setBrailleFont(new Font(parentShell.getDisplay(),
 			                                     value.substring(offset),
 			                                     Integer.parseInt(tokens[0]),
@@ -295,6 +318,7 @@ public final class BZSettings extends BZBase
 			tokens = value.split(" ");
 			if(tokens.length < 3)
 				return false;
+			bzStyledText.loadFont(value.substring(offset));
 			bzStyledText.setAsciiFont(new Font(parentShell.getDisplay(),
 			                                   value.substring(offset),
 			                                   Integer.parseInt(tokens[0]),
@@ -392,6 +416,12 @@ public final class BZSettings extends BZBase
 
 		writer.println();
 
+		writer.println("brailleDotKeys " + bzStyledText.getBrailleDotKeys());
+		writer.println("brailleAscii " + bzStyledText.getBrailleAscii());
+		writer.println("chordWindow " + bzStyledText.getChordWindow());
+
+		writer.println();
+
 		writer.println("brailleText.visible " + bzStyledText.getBrailleVisible());
 		FontData fontData = bzStyledText.getBrailleFont().getFontData()[0];
 		writer.println("brailleText.font "
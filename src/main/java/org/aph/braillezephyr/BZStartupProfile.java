@@ -0,0 +1,182 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * <p>
+ * This class times the named phases of starting BrailleZephyr.
+ * </p><p>
+ * The times are relative to when the class is first used, which is at the
+ * start of <code>main</code>.  The time from the start of the process until
+ * then is recorded as the phase &quot;jvm&quot; when the platform reports
+ * it.  Phases may be timed from any thread, so bells loading in the
+ * background are recorded as well, but phases that have not finished when
+ * the report is made are left out of it.
+ * </p>
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZStartupProfile
+{
+	private static final long ORIGIN = System.nanoTime();
+	private static final Instant ORIGIN_INSTANT = Instant.now();
+	private static final List<Phase> phases = new ArrayList<>();
+	private static boolean processChecked;
+
+	private BZStartupProfile(){}
+
+	/**
+	 * <p>
+	 * Starts timing the phase.
+	 * </p>
+	 *
+	 * @param name the name of the phase
+	 */
+	public static synchronized void start(String name)
+	{
+		phases.add(new Phase(name, System.nanoTime() - ORIGIN));
+	}
+
+	/**
+	 * <p>
+	 * Stops timing the phase.  Nothing happens if the phase was not started
+	 * or has already stopped.
+	 * </p>
+	 *
+	 * @param name the name of the phase
+	 */
+	public static synchronized void stop(String name)
+	{
+		long time = System.nanoTime() - ORIGIN;
+		for(int i = phases.size() - 1; i >= 0; i--)
+		{
+			Phase phase = phases.get(i);
+			if(phase.name.equals(name) && phase.stop < 0 && phase.start <= time)
+			{
+				phase.stop = time;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the time since the origin.
+	 * </p>
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public static long getElapsed()
+	{
+		return System.nanoTime() - ORIGIN;
+	}
+
+	/**
+	 * <p>
+	 * Writes the finished phases to the log.
+	 * </p>
+	 *
+	 * @param logWriter where to write the phases
+	 */
+	static synchronized void log(PrintWriter logWriter)
+	{
+		checkProcess();
+		logWriter.println("Startup phases (ms):");
+		for(Phase phase : phases)
+		if(phase.stop >= 0)
+			logWriter.println(String.format(Locale.ROOT, "  %-12s %10.3f %10.3f", phase.name, millis(phase.start), millis(phase.stop - phase.start)));
+		logWriter.println(String.format(Locale.ROOT, "  %-12s %10.3f", "total", millis(getElapsed())));
+		logWriter.flush();
+	}
+
+	/**
+	 * <p>
+	 * Returns the finished phases as a JSON object.
+	 * </p>
+	 *
+	 * @param version the version of BrailleZephyr
+	 *
+	 * @return the JSON text
+	 */
+	static synchronized String toJson(String version)
+	{
+		checkProcess();
+		StringBuilder builder = new StringBuilder(1024);
+		builder.append("{\n");
+		builder.append("  \"version\": \"").append(version.replace("\\", "\\\\").replace("\"", "\\\"")).append("\",\n");
+		builder.append("  \"os\": \"").append(System.getProperty("os.name")).append("\",\n");
+		builder.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+		builder.append(String.format(Locale.ROOT, "  \"total_ms\": %.3f,\n", millis(getElapsed())));
+		builder.append("  \"phases\": [");
+		boolean first = true;
+		for(Phase phase : phases)
+		if(phase.stop >= 0)
+		{
+			builder.append(first ? "\n" : ",\n");
+			first = false;
+			builder.append(String.format(Locale.ROOT,
+			                             "    { \"name\": \"%s\", \"start_ms\": %.3f, \"duration_ms\": %.3f }",
+			                             phase.name,
+			                             millis(phase.start),
+			                             millis(phase.stop - phase.start)));
+		}
+		builder.append("\n  ]\n}\n");
+		return builder.toString();
+	}
+
+	/**
+	 * Looking up the process is slow, so it is only done for the report.
+	 */
+	private static void checkProcess()
+	{
+		if(processChecked)
+			return;
+		processChecked = true;
+
+		Optional<Instant> processStart = ProcessHandle.current().info().startInstant();
+		if(!processStart.isPresent())
+			return;
+		Phase phase = new Phase("jvm", -Duration.between(processStart.get(), ORIGIN_INSTANT).toNanos());
+		phase.stop = 0;
+		phases.add(0, phase);
+	}
+
+	private static double millis(long nanos)
+	{
+		return nanos / 1e6;
+	}
+
+	private static final class Phase
+	{
+		private final String name;
+		private final long start;
+		private long stop = -1;
+
+		private Phase(String name, long start)
+		{
+			this.name = name;
+			this.start = start;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import org.aph.braillezephyr.core.BZStatistics;
+import org.eclipse.swt.custom.StyledTextContent;
+import org.eclipse.swt.custom.TextChangeListener;
+import org.eclipse.swt.custom.TextChangedEvent;
+import org.eclipse.swt.custom.TextChangingEvent;
+import org.eclipse.swt.widgets.Display;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * This class keeps the statistics of the content on its own thread.
+ * </p><p>
+ * When the content is set, a copy of its text is counted.  For each
+ * change after that, only the text of the lines replaced and the lines
+ * that replaced them is copied, so the cost to the user interface is the
+ * size of the change.  The statistics thread applies the changes in order
+ * and publishes a copy of the counts, which is passed to the listener on
+ * the user interface thread.  Counts published while the listener has not
+ * yet run replace the previous ones, so the listener runs at most once for
+ * each pass of the event loop.
+ * </p>
+ *
+ * @see BZStatistics
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZStatisticsService
+{
+	private final StyledTextContent content;
+	private final Display display;
+	private final Consumer<BZStatistics> listener;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "BrailleZephyr statistics");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicBoolean publishPending = new AtomicBoolean();
+
+	//   only used by the statistics thread
+	private BZStatistics statistics = new BZStatistics();
+
+	private volatile BZStatistics published;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZStatisticsService</code> and counts the content.
+	 * </p>
+	 *
+	 * @param content the content to count (cannot be null)
+	 * @param display the display of the user interface thread
+	 * @param listener run on the user interface thread with the new counts
+	 */
+	public BZStatisticsService(StyledTextContent content, Display display, Consumer<BZStatistics> listener)
+	{
+		this.content = content;
+		this.display = display;
+		this.listener = listener;
+
+		content.addTextChangeListener(new ContentChangeHandler());
+		recount();
+	}
+
+	/**
+	 * <p>
+	 * Stops the statistics thread.  Changes to the content are no longer
+	 * counted.
+	 * </p>
+	 */
+	public void close()
+	{
+		executor.shutdownNow();
+	}
+
+	/**
+	 * <p>
+	 * Returns the last counts published.
+	 * </p>
+	 *
+	 * @return the counts, or null if the content has not been counted yet
+	 */
+	public BZStatistics getStatistics()
+	{
+		return published;
+	}
+
+	private void recount()
+	{
+		String text = content.getTextRange(0, content.getCharCount());
+		submit(() ->
+		{
+			statistics = new BZStatistics();
+			statistics.addText(text);
+		});
+	}
+
+	private void submit(Runnable update)
+	{
+		if(executor.isShutdown())
+			return;
+		executor.execute(() ->
+		{
+			update.run();
+			published = new BZStatistics(statistics);
+			if(!publishPending.getAndSet(true))
+				asyncPublish();
+		});
+	}
+
+	private void asyncPublish()
+	{
+		if(display.isDisposed())
+			return;
+		display.asyncExec(() ->
+		{
+			publishPending.set(false);
+			listener.accept(published);
+		});
+	}
+
+	private final class ContentChangeHandler implements TextChangeListener
+	{
+		private String removedLines[];
+		private int startLine, newLines;
+
+		@Override
+		public void textChanging(TextChangingEvent event)
+		{
+			startLine = content.getLineAtOffset(event.start);
+			newLines = event.newLineCount;
+			removedLines = new String[event.replaceLineCount + 1];
+			for(int i = 0; i < removedLines.length; i++)
+				removedLines[i] = content.getLine(startLine + i);
+		}
+
+		@Override
+		public void textChanged(TextChangedEvent ignored)
+		{
+			String removed[] = removedLines;
+			removedLines = null;
+			if(removed == null)
+				return;
+
+			String added[] = new String[newLines + 1];
+			for(int i = 0; i < added.length; i++)
+				added[i] = content.getLine(startLine + i);
+			submit(() ->
+			{
+				for(String line : removed)
+					statistics.removeLine(line);
+				for(String line : added)
+					statistics.addLine(line);
+			});
+		}
+
+		@Override
+		public void textSet(TextChangedEvent ignored)
+		{
+			removedLines = null;
+			recount();
+		}
+	}
+}
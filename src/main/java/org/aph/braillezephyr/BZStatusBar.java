@@ -0,0 +1,136 @@
+/* Copyright (C) 2015 American Printing House for the Blind Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.aph.braillezephyr;
+
+import org.aph.braillezephyr.core.BZDocument;
+import org.aph.braillezephyr.core.BZStatistics;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+
+/**
+ * <p>
+ * This class shows the position of the caret and the statistics of the
+ * document below the views.
+ * </p><p>
+ * The position is passed in as the caret moves, and the page and line on
+ * the page are found from it by the document, which is paginated by line.
+ * The label is updated at most once per frame, so moving the caret quickly
+ * only sets a few fields.  The status bar does not count anything itself.
+ * </p>
+ *
+ * @see BZStatisticsService
+ *
+ * @author Mike Gray mgray@aph.org
+ */
+public final class BZStatusBar
+{
+	private static final int FRAME_MILLIS = 16;
+
+	private final Label label;
+	private final BZDocument document;
+
+	private BZStatistics statistics;
+	private int caretLine, caretColumn;
+	private boolean updatePending;
+
+	/**
+	 * <p>
+	 * Creates a new <code>BZStatusBar</code> across the two columns of
+	 * <code>composite</code>.
+	 * </p>
+	 *
+	 * @param composite the composite of the views
+	 * @param document the document of the views
+	 */
+	public BZStatusBar(Composite composite, BZDocument document)
+	{
+		this.document = document;
+		label = new Label(composite, SWT.NONE);
+		GridData gridData = new GridData(GridData.FILL_HORIZONTAL);
+		gridData.horizontalSpan = 2;
+		label.setLayoutData(gridData);
+	}
+
+	/**
+	 * <p>
+	 * Shows the statistics.
+	 * </p>
+	 *
+	 * @param statistics the counts of the document
+	 */
+	public void setStatistics(BZStatistics statistics)
+	{
+		this.statistics = statistics;
+		scheduleUpdate();
+	}
+
+	/**
+	 * <p>
+	 * Shows the pages again after the number of lines per page changes.
+	 * </p>
+	 */
+	public void pagesChanged()
+	{
+		scheduleUpdate();
+	}
+
+	/**
+	 * <p>
+	 * Shows the position of the caret.
+	 * </p>
+	 *
+	 * @param line the index of the line of the caret
+	 * @param column the cell of the caret on the line, starting at 0
+	 */
+	public void setCaret(int line, int column)
+	{
+		if(line == caretLine && column == caretColumn)
+			return;
+		caretLine = line;
+		caretColumn = column;
+		scheduleUpdate();
+	}
+
+	private void scheduleUpdate()
+	{
+		if(updatePending || label.isDisposed())
+			return;
+		updatePending = true;
+		label.getDisplay().timerExec(FRAME_MILLIS, this::update);
+	}
+
+	private void update()
+	{
+		updatePending = false;
+		if(label.isDisposed())
+			return;
+
+		int page = document.getPageAtLine(caretLine);
+		StringBuilder builder = new StringBuilder(128);
+		builder.append("Page ").append(page + 1).append(" of ").append(document.getPageCount());
+		builder.append("   Line ").append(caretLine - document.getLineAtPage(page) + 1);
+		builder.append("   Cell ").append(caretColumn + 1);
+		if(statistics != null)
+		{
+			builder.append("      Lines ").append(statistics.getLineCount());
+			builder.append("   Cells ").append(statistics.getCellCount());
+			builder.append("   Paragraphs ").append(statistics.getParagraphCount());
+		}
+		label.setText(builder.toString());
+	}
+}
@@ -15,14 +15,29 @@
 
 package org.aph.braillezephyr;
 
+import org.aph.braillezephyr.core.BZContent;
+import org.aph.braillezephyr.core.BZDocument;
+import org.aph.braillezephyr.core.BZFormatException;
+import org.aph.braillezephyr.core.BZMarginIndex;
+import org.aph.braillezephyr.core.BZPageHashes;
+import org.aph.braillezephyr.core.BZStatistics;
+import org.aph.braillezephyr.core.BZUndoHistory;
+import org.aph.braillezephyr.core.BZValidator;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.CaretEvent;
 import org.eclipse.swt.custom.CaretListener;
 import org.eclipse.swt.custom.ExtendedModifyEvent;
 import org.eclipse.swt.custom.ExtendedModifyListener;
+import org.eclipse.swt.custom.LineBackgroundEvent;
+import org.eclipse.swt.custom.LineBackgroundListener;
 import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.custom.StyledTextContent;
+import org.eclipse.swt.custom.TextChangeListener;
+import org.eclipse.swt.custom.TextChangedEvent;
+import org.eclipse.swt.custom.TextChangingEvent;
 import org.eclipse.swt.custom.VerifyKeyListener;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.FocusEvent;
 import org.eclipse.swt.events.FocusListener;
 import org.eclipse.swt.events.KeyEvent;
@@ -38,26 +53,22 @@ import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Shell;
 
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.DataLine;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <p>
@@ -69,40 +80,52 @@ import java.util.List;
  */
 public class BZStyledText
 {
-	private static final char PARAGRAPH_END = 0xfeff;
+	private static final char PARAGRAPH_END = BZDocument.PARAGRAPH_END;
+
+	private static final String DEFAULT_FONT_NAME = "BrailleZephyr_6s";
+	private static final String FONT_NAMES[] =
+	{
+		"BrailleZephyr_6", "BrailleZephyr_6b", "BrailleZephyr_6s", "BrailleZephyr_6sb",
+		"BrailleZephyr_8", "BrailleZephyr_8b", "BrailleZephyr_8s", "BrailleZephyr_8sb",
+		"BrailleZephyr_8w", "BrailleZephyr_8wb", "BrailleZephyr_8ws", "BrailleZephyr_8wsb"
+	};
 
 	private final Shell parentShell;
 	private final Composite composite;
 	private final StyledText brailleText, asciiText;
 	private final StyledTextContent content;
+	private final BZDocument document;
 
 	private final String versionString;
 	private final int versionMajor, versionMinor, versionPatch;
 
-	private final boolean windowBug = System.getProperty("os.name").toLowerCase().startsWith("windows");
 	private final AdjustOtherThread adjustOtherThread = new AdjustOtherThread();
-	private final Color color;
+	private final BZBrailleTable brailleTable = new BZBrailleTable();
+	private final BZChordRecognizer chordRecognizer = new BZChordRecognizer();
+	private final Color color, marginColor;
 
 	private StyledText currentText;
 
-	private String eol = System.getProperty("line.separator");
-	private int linesPerPage = 25;
-	private int charsPerLine = 40;
+	private final BZFontCache fontCache;
+	private final Set<String> loadedFonts = new HashSet<>();
+
+	private final BZBellService bellService = new BZBellService();
 
 	private int lineMarginBell = 33;
-	private Clip lineMarginClip;
 	private String lineMarginFileName;
 
 	private int pageMarginBell = 25;
-	private Clip pageMarginClip;
 	private String pageMarginFileName;
 
-	private Clip lineEndClip;
 	private String lineEndFileName;
 
-	private final List<ExtendedModifyEvent> changes = new ArrayList<>(1000);
-	private int changeIndex, saveIndex;
-	private boolean undoing, redoing;
+	private final BZUndoHistory undoHistory = new BZUndoHistory();
+	private final BZValidator validator;
+	private final BZMarginIndex marginIndex;
+	private final BZPageHashes pageHashes;
+
+	private final BZStatusBar statusBar;
+	private final BZStatisticsService statisticsService;
 
 	private final StringWriter logString = new StringWriter();
 	private final PrintWriter logWriter = new PrintWriter(logString);
@@ -145,110 +168,48 @@ public class BZStyledText
 			versionPatch = 0;
 
 		color = parentShell.getDisplay().getSystemColor(SWT.COLOR_BLACK);
+		marginColor = new Color(parentShell.getDisplay(), 255, 224, 224);
 
 		composite = new Composite(parentShell, 0);
 		composite.setLayout(new GridLayout(2, true));
 
-		//   load fonts
-		loadFont("BrailleZephyr_6.otf");
-		loadFont("BrailleZephyr_6b.otf");
-		loadFont("BrailleZephyr_6s.otf");
-		loadFont("BrailleZephyr_6sb.otf");
-		loadFont("BrailleZephyr_8.otf");
-		loadFont("BrailleZephyr_8b.otf");
-		loadFont("BrailleZephyr_8s.otf");
-		loadFont("BrailleZephyr_8sb.otf");
-		loadFont("BrailleZephyr_8w.otf");
-		loadFont("BrailleZephyr_8wb.otf");
-		loadFont("BrailleZephyr_8ws.otf");
-		loadFont("BrailleZephyr_8wsb.otf");
-
-		//   load line margin bell
-		try
-		{
-			InputStream inputStreamBellMargin = new BufferedInputStream(getClass().getResourceAsStream("/sounds/line_margin_bell.wav"));
-			AudioInputStream audioInputStreamMargin = AudioSystem.getAudioInputStream(inputStreamBellMargin);
-			DataLine.Info dataLineInfoMargin = new DataLine.Info(Clip.class, audioInputStreamMargin.getFormat());
-			lineMarginClip = (Clip)AudioSystem.getLine(dataLineInfoMargin);
-			lineMarginClip.open(audioInputStreamMargin);
-		}
-		catch(IOException exception)
-		{
-			logWriter.println("ERROR:  Unable to read default line margin bell file:  " + exception.getMessage());
-			lineMarginClip = null;
-		}
-		catch(UnsupportedAudioFileException exception)
-		{
-			logWriter.println("ERROR:  Sound file unsupported for default line margin bell:  " + exception.getMessage());
-			lineMarginClip = null;
-		}
-		catch(LineUnavailableException exception)
-		{
-			logWriter.println("ERROR:  Line unavailable for default line margin bell:  " + exception.getMessage());
-			lineMarginClip = null;
-		}
-
-		//   load page margin bell
-		try
-		{
-			InputStream inputStreamBellPage = new BufferedInputStream(getClass().getResourceAsStream("/sounds/page_margin_bell.wav"));
-			AudioInputStream audioInputStreamPage = AudioSystem.getAudioInputStream(inputStreamBellPage);
-			DataLine.Info dataLineInfoPage = new DataLine.Info(Clip.class, audioInputStreamPage.getFormat());
-			pageMarginClip = (Clip)AudioSystem.getLine(dataLineInfoPage);
-			pageMarginClip.open(audioInputStreamPage);
-		}
-		catch(IOException exception)
-		{
-			logWriter.println("ERROR:  Unable to read default page margin bell file:  " + exception.getMessage());
-			pageMarginClip = null;
-		}
-		catch(UnsupportedAudioFileException exception)
-		{
-			logWriter.println("ERROR:  Sound file unsupported for default page margin bell:  " + exception.getMessage());
-			pageMarginClip = null;
-		}
-		catch(LineUnavailableException exception)
-		{
-			logWriter.println("ERROR:  Line unavailable for default page margin bell:  " + exception.getMessage());
-			pageMarginClip = null;
-		}
+		//   other fonts are loaded when used
+		BZStartupProfile.start("fonts");
+		fontCache = new BZFontCache(versionString);
+		loadFont(DEFAULT_FONT_NAME);
+		BZStartupProfile.stop("fonts");
 
-		//   load line end bell
-		try
-		{
-			InputStream inputStreamBellPage = new BufferedInputStream(getClass().getResourceAsStream("/sounds/line_end_bell.wav"));
-			AudioInputStream audioInputStreamPage = AudioSystem.getAudioInputStream(inputStreamBellPage);
-			DataLine.Info dataLineInfoPage = new DataLine.Info(Clip.class, audioInputStreamPage.getFormat());
-			lineEndClip = (Clip)AudioSystem.getLine(dataLineInfoPage);
-			lineEndClip.open(audioInputStreamPage);
-		}
-		catch(IOException exception)
-		{
-			logWriter.println("ERROR:  Unable to read default line end bell file:  " + exception.getMessage());
-			lineEndClip = null;
-		}
-		catch(UnsupportedAudioFileException exception)
-		{
-			logWriter.println("ERROR:  Sound file unsupported for default line end bell:  " + exception.getMessage());
-			lineEndClip = null;
-		}
-		catch(LineUnavailableException exception)
-		{
-			logWriter.println("ERROR:  Line unavailable for default line end bell:  " + exception.getMessage());
-			lineEndClip = null;
-		}
+		//   load bells in the background
+		BZStartupProfile.start("bells");
+		CompletableFuture.allOf(CompletableFuture.runAsync(this::openBells),
+		                        loadBellLater(BZBellService.LINE_MARGIN, "/sounds/line_margin_bell.wav", "line margin"),
+		                        loadBellLater(BZBellService.PAGE_MARGIN, "/sounds/page_margin_bell.wav", "page margin"),
+		                        loadBellLater(BZBellService.LINE_END, "/sounds/line_end_bell.wav", "line end"))
+			.thenRun(() -> BZStartupProfile.stop("bells"));
 
 		brailleText = new StyledText(composite, SWT.BORDER | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
 		brailleText.setLayoutData(new GridData(GridData.FILL_BOTH));
-		brailleText.setFont(new Font(parentShell.getDisplay(), "BrailleZephyr_6s", 18, SWT.NORMAL));
+		brailleText.setFont(new Font(parentShell.getDisplay(), DEFAULT_FONT_NAME, 18, SWT.NORMAL));
 		brailleText.addFocusListener(new FocusHandler(brailleText));
 		brailleText.addPaintListener(new PaintHandler(brailleText));
 		BrailleKeyHandler brailleKeyHandler = new BrailleKeyHandler(true);
 		brailleText.addKeyListener(brailleKeyHandler);
 		brailleText.addVerifyKeyListener(brailleKeyHandler);
 		brailleText.addExtendedModifyListener(new ExtendedModifyHandler(brailleText));
+		brailleText.addLineBackgroundListener(new MarginHandler());
 
 		content = brailleText.getContent();
+		document = new BZDocument(new ContentAdapter(content), logWriter);
+		document.setVersion(versionMajor, versionMinor, versionPatch);
+
+		//   sees all changes, including rewrapping and reading files
+		validator = new BZValidator(document.getContent());
+		marginIndex = new BZMarginIndex(document.getContent());
+		pageHashes = new BZPageHashes(document.getContent());
+		content.addTextChangeListener(new ContentChangeHandler());
+		revalidate();
+		pageHashes.rebuild();
+		pageHashes.markSaved();
 
 		asciiText = new StyledText(composite, SWT.BORDER | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
 		asciiText.setContent(content);
@@ -258,51 +219,139 @@ public class BZStyledText
 		asciiText.addPaintListener(new PaintHandler(asciiText));
 		asciiText.addVerifyKeyListener(new BrailleKeyHandler(false));
 		asciiText.addExtendedModifyListener(new ExtendedModifyHandler(asciiText));
+		asciiText.addLineBackgroundListener(new MarginHandler());
 
 		brailleText.addCaretListener(new CaretHandler(brailleText, asciiText));
 		asciiText.addCaretListener(new CaretHandler(asciiText, brailleText));
 
+		statusBar = new BZStatusBar(composite, document);
+		statisticsService = new BZStatisticsService(content, parentShell.getDisplay(), statusBar::setStatistics);
+
+		composite.addDisposeListener(new DisposeHandler());
+
 		currentText = brailleText;
 	}
 
-	private void loadFont(String fontFileName)
+	private void openBells()
 	{
 		try
 		{
-			InputStream fontInputStream = getClass().getResourceAsStream("/fonts/" + fontFileName);
-			if(fontInputStream == null)
-				return;
-			File fontFile = new File(System.getProperty("java.io.tmpdir") + File.separator + fontFileName);
-			FileOutputStream fontOutputStream = new FileOutputStream(fontFile);
-			byte buffer[] = new byte[27720];
-			int length;
-			while((length = fontInputStream.read(buffer)) > 0)
-				fontOutputStream.write(buffer, 0, length);
-			fontInputStream.close();
-			fontOutputStream.close();
-
-			parentShell.getDisplay().loadFont(fontFile.getPath());
+			bellService.open();
 		}
-		catch(FileNotFoundException exception)
+		catch(LineUnavailableException exception)
+		{
+			logWriter.println("ERROR:  Line unavailable for bells:  " + exception.getMessage());
+		}
+	}
+
+	private CompletableFuture<Void> loadBellLater(int bell, String resourceName, String description)
+	{
+		return CompletableFuture.runAsync(() ->
+		{
+			try
+			{
+				bellService.loadDefault(bell, new BufferedInputStream(getClass().getResourceAsStream(resourceName)));
+			}
+			catch(IOException exception)
+			{
+				logWriter.println("ERROR:  Unable to read default " + description + " bell file:  " + exception.getMessage());
+			}
+			catch(UnsupportedAudioFileException exception)
+			{
+				logWriter.println("ERROR:  Sound file unsupported for default " + description + " bell:  " + exception.getMessage());
+			}
+		});
+	}
+
+	private void loadBellFile(int bell, String fileName) throws FileNotFoundException,
+	                                                            IOException,
+	                                                            UnsupportedAudioFileException,
+	                                                            LineUnavailableException
+	{
+		if(bellService.hasLineFailed())
+			throw new LineUnavailableException("No line for bells");
+		bellService.load(bell, new BufferedInputStream(new FileInputStream(fileName)));
+	}
+
+	/**
+	 * <p>
+	 * Loads the font if it is one of the fonts included with BrailleZephyr
+	 * and has not been loaded yet.
+	 * </p>
+	 *
+	 * @param fontName the name of the font
+	 */
+	void loadFont(String fontName)
+	{
+		if(loadedFonts.contains(fontName))
+			return;
+
+		loadedFonts.add(fontName);
+		if(!Arrays.asList(FONT_NAMES).contains(fontName))
+			return;
+
+		try
 		{
-			logWriter.println("ERROR:  Unable to open font file:  " + exception.getMessage());
+			File fontFile = fontCache.getFontFile(fontName);
+			if(fontFile != null)
+				parentShell.getDisplay().loadFont(fontFile.getPath());
 		}
 		catch(IOException exception)
 		{
-			logWriter.println("ERROR:  Unable to read font file:  " + exception.getMessage());
+			logWriter.println("ERROR:  Unable to extract font " + fontName + ":  " + exception.getMessage());
 		}
 	}
 
+	/**
+	 * <p>
+	 * Loads all of the fonts included with BrailleZephyr, so that they can
+	 * be chosen from.
+	 * </p>
+	 */
+	void loadFonts()
+	{
+		for(String fontName : FONT_NAMES)
+			loadFont(fontName);
+	}
+
 	Shell getParentShell()
 	{
 		return parentShell;
 	}
 
+	StyledText getBrailleText()
+	{
+		return brailleText;
+	}
+
+	StyledText getAsciiText()
+	{
+		return asciiText;
+	}
+
+	StyledText getCurrentText()
+	{
+		return currentText;
+	}
+
 	String getVersionString()
 	{
 		return versionString;
 	}
 
+	/**
+	 * <p>
+	 * Returns the document of the braille and ascii texts, for operations
+	 * that do not need the display.
+	 * </p>
+	 *
+	 * @return the document
+	 */
+	public BZDocument getDocument()
+	{
+		return document;
+	}
+
 	/**
 	 * <p>
 	 * Returns the current number of lines per page.
@@ -314,7 +363,7 @@ public class BZStyledText
 	 */
 	public int getLinesPerPage()
 	{
-		return linesPerPage;
+		return document.getLinesPerPage();
 	}
 
 	/**
@@ -330,11 +379,13 @@ public class BZStyledText
 	 */
 	public void setLinesPerPage(int linesPerPage)
 	{
-		int bellDiff = this.linesPerPage - pageMarginBell;
-		this.linesPerPage = linesPerPage;
+		int bellDiff = document.getLinesPerPage() - pageMarginBell;
+		document.setLinesPerPage(linesPerPage);
 		pageMarginBell = linesPerPage - bellDiff;
 		if(pageMarginBell < 0)
 			pageMarginBell = 0;
+		revalidate();
+		statusBar.pagesChanged();
 	}
 
 	/**
@@ -365,7 +416,7 @@ public class BZStyledText
 	 */
 	public int getCharsPerLine()
 	{
-		return charsPerLine;
+		return document.getCharsPerLine();
 	}
 
 	/**
@@ -383,11 +434,12 @@ public class BZStyledText
 	 */
 	public void setCharsPerLine(int charsPerLine)
 	{
-		int bellDiff = this.charsPerLine - lineMarginBell;
-		this.charsPerLine = charsPerLine;
+		int bellDiff = document.getCharsPerLine() - lineMarginBell;
+		document.setCharsPerLine(charsPerLine);
 		lineMarginBell = charsPerLine - bellDiff;
 		if(lineMarginBell < 0)
 			lineMarginBell = 0;
+		revalidate();
 	}
 
 	/**
@@ -401,7 +453,7 @@ public class BZStyledText
 	 */
 	public int getLineMarginBell()
 	{
-		if(lineMarginClip == null)
+		if(!bellService.isAvailable(BZBellService.LINE_MARGIN))
 			return -1;
 		return lineMarginBell;
 	}
@@ -420,7 +472,7 @@ public class BZStyledText
 	 */
 	public void setLineMarginBell(int lineMarginBell)
 	{
-		if(lineMarginClip == null)
+		if(!bellService.isAvailable(BZBellService.LINE_MARGIN))
 			return;
 		this.lineMarginBell = lineMarginBell;
 	}
@@ -459,23 +511,8 @@ public class BZStyledText
 	                                                           UnsupportedAudioFileException,
 	                                                           LineUnavailableException
 	{
-		InputStream inputStream = new BufferedInputStream(new FileInputStream(fileName));
-		AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(inputStream);
-		DataLine.Info dataLineInfo = new DataLine.Info(Clip.class, audioInputStream.getFormat());
-		Clip clip = lineMarginClip;
-		try
-		{
-			lineMarginClip = (Clip)AudioSystem.getLine(dataLineInfo);
-			lineMarginClip.open(audioInputStream);
-		}
-		catch(IOException | LineUnavailableException exception)
-		{
-			lineMarginClip = clip;
-			throw exception;
-		}
+		loadBellFile(BZBellService.LINE_MARGIN, fileName);
 		lineMarginFileName = fileName;
-		if(clip != null)
-			clip.close();
 	}
 
 	/**
@@ -489,7 +526,7 @@ public class BZStyledText
 	 */
 	public int getPageMarginBell()
 	{
-		if(pageMarginClip == null)
+		if(!bellService.isAvailable(BZBellService.PAGE_MARGIN))
 			return -1;
 		return pageMarginBell;
 	}
@@ -508,7 +545,7 @@ public class BZStyledText
 	 */
 	public void setPageMarginBell(int pageMarginBell)
 	{
-		if(pageMarginClip == null)
+		if(!bellService.isAvailable(BZBellService.PAGE_MARGIN))
 			return;
 		this.pageMarginBell = pageMarginBell;
 	}
@@ -547,23 +584,8 @@ public class BZStyledText
 	                                                           UnsupportedAudioFileException,
 	                                                           LineUnavailableException
 	{
-		InputStream inputStream = new BufferedInputStream(new FileInputStream(fileName));
-		AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(inputStream);
-		DataLine.Info dataLineInfo = new DataLine.Info(Clip.class, audioInputStream.getFormat());
-		Clip clip = pageMarginClip;
-		try
-		{
-			pageMarginClip = (Clip)AudioSystem.getLine(dataLineInfo);
-			pageMarginClip.open(audioInputStream);
-		}
-		catch(IOException | LineUnavailableException exception)
-		{
-			pageMarginClip = clip;
-			throw exception;
-		}
+		loadBellFile(BZBellService.PAGE_MARGIN, fileName);
 		pageMarginFileName = fileName;
-		if(clip != null)
-			clip.close();
 	}
 
 	/**
@@ -586,23 +608,8 @@ public class BZStyledText
 	                                                        UnsupportedAudioFileException,
 	                                                        LineUnavailableException
 	{
-		InputStream inputStream = new BufferedInputStream(new FileInputStream(fileName));
-		AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(inputStream);
-		DataLine.Info dataLineInfo = new DataLine.Info(Clip.class, audioInputStream.getFormat());
-		Clip clip = lineEndClip;
-		try
-		{
-			lineEndClip = (Clip)AudioSystem.getLine(dataLineInfo);
-			lineEndClip.open(audioInputStream);
-		}
-		catch(IOException | LineUnavailableException exception)
-		{
-			lineEndClip = clip;
-			throw exception;
-		}
+		loadBellFile(BZBellService.LINE_END, fileName);
 		lineEndFileName = fileName;
-		if(clip != null)
-			clip.close();
 	}
 
 	/**
@@ -619,6 +626,101 @@ public class BZStyledText
 		return lineEndFileName;
 	}
 
+	/**
+	 * <p>
+	 * Returns the keys used to enter dots 1 through 8.
+	 * </p>
+	 *
+	 * @return the current keys
+	 *
+	 * @see #setBrailleDotKeys(String)
+	 */
+	public String getBrailleDotKeys()
+	{
+		return brailleTable.getDotKeys();
+	}
+
+	/**
+	 * <p>
+	 * Sets the keys used to enter the dots, the first character is the key
+	 * for dot 1, the second for dot 2, and so on.  Six or eight keys may be
+	 * given.
+	 * </p>
+	 *
+	 * @param dotKeys the new keys
+	 *
+	 * @return false if the keys are invalid
+	 *
+	 * @see #getBrailleDotKeys()
+	 */
+	public boolean setBrailleDotKeys(String dotKeys)
+	{
+		return brailleTable.setDotKeys(dotKeys);
+	}
+
+	/**
+	 * <p>
+	 * Returns the characters entered for the 64 six dot patterns.
+	 * </p>
+	 *
+	 * @return the current table
+	 *
+	 * @see #setBrailleAscii(String)
+	 */
+	public String getBrailleAscii()
+	{
+		return brailleTable.getAsciiBraille();
+	}
+
+	/**
+	 * <p>
+	 * Sets the characters entered for the 64 six dot patterns, indexed by
+	 * dots.  Patterns with dots 7 or 8 are entered as Unicode braille.
+	 * </p>
+	 *
+	 * @param asciiBraille the new table
+	 *
+	 * @return false if the table is invalid
+	 *
+	 * @see #getBrailleAscii()
+	 */
+	public boolean setBrailleAscii(String asciiBraille)
+	{
+		return brailleTable.setAsciiBraille(asciiBraille);
+	}
+
+	/**
+	 * <p>
+	 * Returns the time window for grouping dots into a chord.
+	 * </p>
+	 *
+	 * @return the current window in milliseconds
+	 *
+	 * @see #setChordWindow(int)
+	 */
+	public int getChordWindow()
+	{
+		return chordRecognizer.getWindow();
+	}
+
+	/**
+	 * <p>
+	 * Sets the time window for grouping dots into a chord.
+	 * </p><p>
+	 * Dots pressed within the window of the first dot of a chord are part of
+	 * the chord even if another dot has already been released.  Larger
+	 * values forgive uneven chords, smaller values allow faster rollover.
+	 * </p>
+	 *
+	 * @param window the new window in milliseconds
+	 *
+	 * @see #getChordWindow()
+	 */
+	public void setChordWindow(int window)
+	{
+		chordRecognizer.setWindow(window);
+	}
+
 	/**
 	 * <p>
 	 * Returns if the braille text is visible.
@@ -749,8 +851,8 @@ public class BZStyledText
 	public void setText(String text)
 	{
 		content.setText(text);
-		changes.clear();
-		changeIndex = saveIndex = 0;
+		undoHistory.clear();
+		pageHashes.markSaved();
 	}
 
 	/**
@@ -808,15 +910,212 @@ public class BZStyledText
 		currentText.setTopIndex(lineTop);
 	}
 
+	/**
+	 * Line delimiters are not checked, as the text uses its own but files
+	 * are written with the document's.
+	 */
+	private void revalidate()
+	{
+		validator.setFrom(document);
+		validator.setEol(null);
+		validator.validate();
+		marginIndex.setCharsPerLine(document.getCharsPerLine());
+		pageHashes.setLinesPerPage(document.getLinesPerPage());
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of pages in the document.
+	 * </p>
+	 *
+	 * @return the number of pages
+	 */
+	public int getPageCount()
+	{
+		return document.getPageCount();
+	}
+
+	/**
+	 * <p>
+	 * Returns the page of the caret.
+	 * </p>
+	 *
+	 * @return the page, starting at 1
+	 */
+	public int getCaretPage()
+	{
+		return document.getPageAtLine(currentText.getLineAtOffset(currentText.getCaretOffset())) + 1;
+	}
+
+	/**
+	 * <p>
+	 * Moves the caret to the start of the page, and scrolls both views so
+	 * that the page is at the top.
+	 * </p><p>
+	 * The document is paginated by line, so the first line of the page is
+	 * found by the document, and its offset from the line index of the
+	 * content.  The current view is scrolled before the caret is moved,
+	 * so the other view is adjusted once without waiting for a paint.
+	 * </p>
+	 *
+	 * @param page the page, starting at 1, which is limited to the pages
+	 *             of the document
+	 */
+	public void gotoPage(int page)
+	{
+		page = Math.max(1, Math.min(page, getPageCount()));
+		int lineIndex = document.getLineAtPage(page - 1);
+		int offset = content.getOffsetAtLine(lineIndex);
+
+		StyledText other = currentText == brailleText ? asciiText : brailleText;
+		currentText.setTopIndex(lineIndex);
+		currentText.setCaretOffset(offset);
+		other.setCaretOffset(offset);
+		adjustOtherThread.adjustOther(currentText, other);
+	}
+
+	/**
+	 * <p>
+	 * Moves the caret to the start of the next page.
+	 * </p>
+	 *
+	 * @return false if the caret is on the last page
+	 */
+	public boolean nextPage()
+	{
+		int page = getCaretPage();
+		if(page >= getPageCount())
+			return false;
+		gotoPage(page + 1);
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Moves the caret to the start of the previous page.
+	 * </p>
+	 *
+	 * @return false if the caret is on the first page
+	 */
+	public boolean previousPage()
+	{
+		int page = getCaretPage();
+		if(page <= 1)
+			return false;
+		gotoPage(page - 1);
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Moves the caret to the next line that has more characters than the
+	 * characters per line.
+	 * </p>
+	 *
+	 * @return false if there is no such line after the caret
+	 */
+	public boolean nextMarginViolation()
+	{
+		return gotoMarginViolation(marginIndex.next(currentText.getLineAtOffset(currentText.getCaretOffset())));
+	}
+
+	/**
+	 * <p>
+	 * Moves the caret to the previous line that has more characters than
+	 * the characters per line.
+	 * </p>
+	 *
+	 * @return false if there is no such line before the caret
+	 */
+	public boolean previousMarginViolation()
+	{
+		return gotoMarginViolation(marginIndex.previous(currentText.getLineAtOffset(currentText.getCaretOffset())));
+	}
+
+	private boolean gotoMarginViolation(int lineIndex)
+	{
+		if(lineIndex < 0)
+			return false;
+
+		//   place the caret at the first character past the margin
+		String line = content.getLine(lineIndex);
+		int column = getCharsPerLine();
+		if(line.length() > 0 && line.charAt(0) == 0xc)
+			column++;
+		currentText.setCaretOffset(content.getOffsetAtLine(lineIndex) + Math.min(column, line.length()));
+		scrollToCaret();
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of lines that have more characters than the
+	 * characters per line.
+	 * </p>
+	 *
+	 * @return the number of lines
+	 */
+	public int getMarginViolationCount()
+	{
+		return marginIndex.size();
+	}
+
+	/**
+	 * <p>
+	 * Returns the pages that have changed since the text was last read or
+	 * saved.  Only a hash of each page is compared, so this is fast for
+	 * any size of text.
+	 * </p>
+	 *
+	 * @return the indexes of the pages, in order
+	 *
+	 * @see BZPageHashes
+	 */
+	public int[] getChangedPages()
+	{
+		return pageHashes.getChangedPages();
+	}
+
+	/**
+	 * <p>
+	 * Returns the issues found by checking the text against the lines per
+	 * page and characters per line.
+	 * </p>
+	 *
+	 * @return the issues, sorted by line
+	 */
+	List<BZValidator.Issue> getValidationIssues()
+	{
+		return validator.getIssues();
+	}
+
+	/**
+	 * <p>
+	 * Returns the last statistics counted in the background.
+	 * </p>
+	 *
+	 * @return the statistics, or null if they have not been counted yet
+	 */
+	BZStatistics getStatistics()
+	{
+		return statisticsService.getStatistics();
+	}
+
 	private void clearChanges()
 	{
-		changes.clear();
-		changeIndex = saveIndex = 0;
+		undoHistory.clear();
 	}
 
-	private void resetChanges()
+	/**
+	 * <p>
+	 * Marks the text as saved, which is done once the file has replaced
+	 * the original, as writing may still fail after the text is written.
+	 * </p>
+	 */
+	void resetChanges()
 	{
-		saveIndex = changeIndex;
+		undoHistory.markSaved();
+		pageHashes.markSaved();
 	}
 
 	/**
@@ -832,7 +1131,7 @@ public class BZStyledText
 	 */
 	public boolean getModified()
 	{
-		return saveIndex != changeIndex;
+		return undoHistory.isModified();
 	}
 
 	/**
@@ -847,11 +1146,9 @@ public class BZStyledText
 	 */
 	public void undo()
 	{
-		if(changeIndex < 1)
+		BZUndoHistory.Change change = undoHistory.undo();
+		if(change == null)
 			return;
-		undoing = true;
-		changeIndex--;
-		ExtendedModifyEvent change = changes.remove(changeIndex);
 		currentText.replaceTextRange(change.start, change.length, change.replacedText);
 		currentText.setCaretOffset(change.start + change.replacedText.length());
 		scrollToCaret();
@@ -867,10 +1164,9 @@ public class BZStyledText
 	 */
 	public void redo()
 	{
-		if(changeIndex == changes.size())
+		BZUndoHistory.Change change = undoHistory.redo();
+		if(change == null)
 			return;
-		redoing = true;
-		ExtendedModifyEvent change = changes.remove(changeIndex);
 		currentText.replaceTextRange(change.start, change.length, change.replacedText);
 		currentText.setCaretOffset(change.start + change.replacedText.length());
 		scrollToCaret();
@@ -878,9 +1174,7 @@ public class BZStyledText
 
 	private boolean isFirstLineOnPage(int index)
 	{
-		if(linesPerPage == 0)
-			return false;
-		return index % linesPerPage == 0;
+		return document.isFirstLineOnPage(index);
 	}
 
 	/**
@@ -895,65 +1189,14 @@ public class BZStyledText
 	 * @exception IOException
 	 *
 	 * @see #writeBRF(Writer)
+	 * @see BZDocument#readBRF(Reader)
 	 */
 	public void readBRF(Reader reader) throws IOException
 	{
-		StringBuilder stringBuilder = new StringBuilder(65536);
-		boolean checkLinesPerPage = true;
-		boolean removeFormFeed = true;
-		char buffer[] = new char[65536];
-		int cnt, trim;
-
-		eol = null;
-		while((cnt = reader.read(buffer)) > 0)
-		{
-			//   see if lines per page can be determined
-			if(checkLinesPerPage)
-			{
-				checkLinesPerPage = false;
-				int lines = 0, i;
-				outer:for(i = 0; i < cnt; i++)
-				switch(buffer[i])
-				{
-				case '\n':  lines++;  break;
-
-				case '\r':
-
-					if(eol == null)
-						eol = "\r\n";
-					break;
-
-				case 0xc:
-
-					linesPerPage = lines;
-					break outer;
-				}
-
-				if(eol == null)
-					eol = "\n";
-				if(i == cnt)
-					removeFormFeed = false;
-			}
-
-			//   remove form feeds
-			if(removeFormFeed)
-			{
-				trim = 0;
-				for(int i = 0; i < cnt; i++)
-				if(buffer[i] != 0xc)
-				{
-					buffer[trim] = buffer[i];
-					trim++;
-				}
-			}
-			else
-				trim = cnt;
-
-			stringBuilder.append(buffer, 0, trim);
-		}
-
-		content.setText(stringBuilder.toString());
+		document.readBRF(reader);
 		clearChanges();
+		pageHashes.markSaved();
+		statusBar.pagesChanged();
 	}
 
 	/**
@@ -966,31 +1209,11 @@ public class BZStyledText
 	 * @exception IOException
 	 *
 	 * @see #readBRF(Reader)
+	 * @see BZDocument#writeBRF(Writer)
 	 */
 	public void writeBRF(Writer writer) throws IOException
 	{
-		//   write first line
-		String line = content.getLine(0);
-		if(line.length() > 0 && line.charAt(line.length() - 1) == PARAGRAPH_END)
-			writer.write(line.substring(0, line.length() - 1));
-		else
-			writer.write(line);
-
-		//   write remaining lines
-		for(int i = 1; i < content.getLineCount(); i++)
-		{
-			writer.write(eol);
-			if(isFirstLineOnPage(i))
-				writer.write(0xc);
-			line = content.getLine(i);
-			if(line.length() > 0 && line.charAt(line.length() - 1) == PARAGRAPH_END)
-				writer.write(line.substring(0, line.length() - 1));
-			else
-				writer.write(line);
-		}
-
-		writer.flush();
-		resetChanges();
+		document.writeBRF(writer);
 	}
 
 	/**
@@ -1003,89 +1226,32 @@ public class BZStyledText
 	 * @exception IOException
 	 *
 	 * @see #writeBZY(Writer)
+	 * @see BZDocument#readBZY(Reader)
 	 */
 	public void readBZY(Reader reader) throws IOException, BZException
 	{
-		String line;
-		boolean returnAtEnd = false;
-		int caretOffset = 0;
-		int unknown = 0;
-
-		content.setText("");
-		eol = System.getProperty("line.separator");
-		BufferedReader buffer = new BufferedReader(reader);
-
-		//   read configuration lines
-		header:while((line = buffer.readLine()) != null)
+		try
 		{
-			String tokens[] = line.split(" ");
-			switch(tokens[0])
-			{
-
-			//   don't do anything for now
-			case "Version":  break;
-
-			case "CharsPerLine":  charsPerLine = Integer.parseInt(tokens[1]);  break;
-			case "LinesPerPage":  linesPerPage = Integer.parseInt(tokens[1]);  break;
-
-			case "CaretOffset":  caretOffset  = Integer.parseInt(tokens[1]);  break;
-			case "ViewFocus":
-
-				if(tokens[1].equals("braille"))
-				{
-					if(brailleText.isVisible())
-						brailleText.setFocus();
-				}
-				else if(tokens[1].equals("ascii"))
-				{
-					if(asciiText.isVisible())
-						asciiText.setFocus();
-				}
-				else
-					logWriter.println("ERROR:  Invalid ViewFocus value:  " + line);
-				break;
-
-			case "ReturnAtEnd":  returnAtEnd = Boolean.parseBoolean(tokens[1]); break;
-
-			case "HeaderEnd":  break header;
-
-			default:
-
-				logWriter.println("WARNING:  Unknown file format parameter:  " + line);
-				unknown++;
-				if(unknown > 6)
-					throw new BZException("Invalid file format");
-				break;
-			}
+			document.readBZY(reader);
 		}
-		if(line == null)
-			throw new BZException("Invalid file format");
-
-		//   read first line, may be null for empty document
-		if((line = buffer.readLine()) != null)
+		catch(BZFormatException exception)
 		{
-			if(line.length() > 0 && line.charAt(line.length() - 1) == 0xb6)
-				content.replaceTextRange(0, 0, line.substring(0, line.length() - 1) + PARAGRAPH_END);
-			else
-				content.replaceTextRange(0, 0, line);
-
-			//   read next lines
-			while((line = buffer.readLine()) != null)
-			{
-				content.replaceTextRange(content.getCharCount(), 0, eol);
-				if(line.length() > 0 && line.charAt(line.length() - 1) == 0xb6)
-					content.replaceTextRange(content.getCharCount(), 0, line.substring(0, line.length() - 1) + PARAGRAPH_END);
-				else
-					content.replaceTextRange(content.getCharCount(), 0, line);
-			}
+			throw new BZException(exception.getMessage());
 		}
+		pageHashes.markSaved();
 
-		if(returnAtEnd)
-			content.replaceTextRange(content.getCharCount(), 0, eol);
+		if(document.getViewFocus().equals("braille"))
+		{
+			if(brailleText.isVisible())
+				brailleText.setFocus();
+		}
+		else if(asciiText.isVisible())
+			asciiText.setFocus();
 
 		clearChanges();
-		brailleText.setCaretOffset(caretOffset);
-		asciiText.setCaretOffset(caretOffset);
+		statusBar.pagesChanged();
+		brailleText.setCaretOffset(document.getCaretOffset());
+		asciiText.setCaretOffset(document.getCaretOffset());
 	}
 
 	/**
@@ -1098,49 +1264,16 @@ public class BZStyledText
 	 * @exception IOException
 	 *
 	 * @see #readBZY(Reader)
+	 * @see BZDocument#writeBZY(Writer)
 	 */
 	public void writeBZY(Writer writer) throws IOException
 	{
-		//   write configuration lines
-		writer.write("Version " + versionMajor + ' ' + versionMinor + ' ' + versionPatch + eol);
-
-		writer.write("CharsPerLine " + charsPerLine + eol);
-		writer.write("LinesPerPage " + linesPerPage + eol);
-
-		writer.write("CaretOffset " + currentText.getCaretOffset() + eol);
-		writer.write("ViewFocus ");
+		document.setCaretOffset(currentText.getCaretOffset());
 		if(currentText == brailleText)
-			writer.write("braille" + eol);
-		else
-			writer.write("ascii" + eol);
-
-		if(content.getCharCount() > 0)
-			writer.write("ReturnAtEnd " + (content.getLine(content.getLineCount() - 1).length() == 0) + eol);
-		else
-			writer.write("ReturnAtEnd false" + eol);
-
-		writer.write("HeaderEnd" + eol);
-
-		//   write first line
-		String line = content.getLine(0);
-		if(line.length() > 0 && line.charAt(line.length() - 1) == PARAGRAPH_END)
-			writer.write(line.substring(0, line.length() - 1) + (char)0xb6);
+			document.setViewFocus("braille");
 		else
-			writer.write(line);
-
-		//   write text
-		for(int i = 1; i < content.getLineCount(); i++)
-		{
-			writer.write(eol);
-			line = content.getLine(i);
-			if(line.length() > 0 && line.charAt(line.length() - 1) == PARAGRAPH_END)
-				writer.write(line.substring(0, line.length() - 1) + (char)0xb6);
-			else
-				writer.write(line);
-		}
-
-		writer.flush();
-		resetChanges();
+			document.setViewFocus("ascii");
+		document.writeBZY(writer);
 	}
 
 	/**
@@ -1153,68 +1286,87 @@ public class BZStyledText
 	 * </p><p>
 	 * Currently this cannot be undone.
 	 * </p>
+	 *
+	 * @see BZDocument#rewrapFromLine(int)
 	 */
 	public void rewrapFromCaret()
 	{
-		StringBuilder stringBuilder = new StringBuilder(charsPerLine * 3);
+		document.rewrapFromLine(content.getLineAtOffset(currentText.getCaretOffset()));
+		clearChanges();
+	}
+
+	/**
+	 * <p>
+	 * Adapts the content of the texts for the document.
+	 * </p>
+	 */
+	private static final class ContentAdapter implements BZContent
+	{
+		private final StyledTextContent content;
 
-		for(int i = content.getLineAtOffset(currentText.getCaretOffset()); i < content.getLineCount(); i++)
+		private ContentAdapter(StyledTextContent content)
 		{
-			String line = content.getLine(i);
-			if(line.length() == 0)
-				continue;
+			this.content = content;
+		}
 
-			//   line too long
-			if(line.length() > charsPerLine)
-			{
-				int wordWrap, wordEnd;
+		@Override
+		public int getCharCount()
+		{
+			return content.getCharCount();
+		}
 
-				//   find beginning of word being wrapped
-				if(line.charAt(charsPerLine) != ' ')
-				{
-					for(wordWrap = charsPerLine; wordWrap > charsPerLine / 2; wordWrap--)
-						if(line.charAt(wordWrap) == ' ')
-							break;
-					if(wordWrap == charsPerLine / 2)
-						continue;
-					wordWrap++;
-				}
-				else
-				{
-					for(wordWrap = charsPerLine; wordWrap < line.length(); wordWrap++)
-						if(line.charAt(wordWrap) != ' ')
-							break;
-					if(wordWrap == line.length())
-						continue;
-				}
+		@Override
+		public int getLineCount()
+		{
+			return content.getLineCount();
+		}
 
-				//   find end of word before word being wrapped
-				for(wordEnd = wordWrap - 1; wordEnd > charsPerLine / 4; wordEnd--)
-					if(line.charAt(wordEnd) != ' ')
-						break;
-				if(wordEnd == charsPerLine / 4)
-					continue;
-				wordEnd++;
-
-				//   build replacement text
-				int length = line.length();
-				stringBuilder.setLength(0);
-				stringBuilder.append(line.substring(0, wordEnd)).append(eol).append(line.substring(wordWrap, length));
-				if(length > 0 && line.charAt(length - 1) != PARAGRAPH_END)
-				if(i < content.getLineCount() - 1)
-				{
-					String next = content.getLine(i + 1);
-					stringBuilder.append(' ').append(next);
-					length += eol.length() + next.length();
-				}
+		@Override
+		public String getLine(int index)
+		{
+			return content.getLine(index);
+		}
 
-				content.replaceTextRange(content.getOffsetAtLine(i), length, stringBuilder.toString());
-			}
-			else if(line.length() > 0 && line.charAt(line.length() - 1) == PARAGRAPH_END)
-				break;
+		@Override
+		public int getLineAtOffset(int offset)
+		{
+			return content.getLineAtOffset(offset);
 		}
 
-		clearChanges();
+		@Override
+		public int getOffsetAtLine(int index)
+		{
+			return content.getOffsetAtLine(index);
+		}
+
+		@Override
+		public String getTextRange(int start, int length)
+		{
+			return content.getTextRange(start, length);
+		}
+
+		@Override
+		public void replaceTextRange(int start, int length, String text)
+		{
+			content.replaceTextRange(start, length, text);
+		}
+
+		@Override
+		public void setText(String text)
+		{
+			content.setText(text);
+		}
+	}
+
+	private final class DisposeHandler implements DisposeListener
+	{
+		@Override
+		public void widgetDisposed(DisposeEvent ignored)
+		{
+			bellService.close();
+			statisticsService.close();
+			marginColor.dispose();
+		}
 	}
 
 	private final class FocusHandler implements FocusListener
@@ -1233,7 +1385,22 @@ public class BZStyledText
 		}
 
 		@Override
-		public void focusLost(FocusEvent ignored){}
+		public void focusLost(FocusEvent ignored)
+		{
+			//   releases go to the other control
+			chordRecognizer.reset();
+		}
+	}
+
+	/**
+	 * A form feed at the start of the line is not a cell.
+	 */
+	private int getCellColumn(int caretOffset, int lineOffset)
+	{
+		int column = caretOffset - lineOffset;
+		if(column > 0 && content.getTextRange(lineOffset, 1).charAt(0) == 0xc)
+			column--;
+		return column;
 	}
 
 	private final class CaretHandler implements CaretListener
@@ -1256,29 +1423,21 @@ public class BZStyledText
 			int lineOffset = source.getOffsetAtLine(lineIndex);
 
 			//   play line margin bell
-			if(lineMarginClip != null && lineMarginBell > 0 && caretOffset == prevCaretOffset + 1)
-			{
-				if(caretOffset - lineOffset == lineMarginBell)
-				if(!lineMarginClip.isActive())
-				{
-					lineMarginClip.setFramePosition(0);
-					lineMarginClip.start();
-				}
-			}
+			if(lineMarginBell > 0 && caretOffset == prevCaretOffset + 1)
+			if(caretOffset - lineOffset == lineMarginBell)
+				bellService.ring(BZBellService.LINE_MARGIN);
 
 			//   play line end bell
-			if(lineEndClip != null && charsPerLine > 0 && caretOffset == prevCaretOffset + 1)
-			{
-				if(caretOffset - lineOffset == charsPerLine)
-					if(!lineEndClip.isActive())
-					{
-						lineEndClip.setFramePosition(0);
-						lineEndClip.start();
-					}
-			}
+			int charsPerLine = getCharsPerLine();
+			if(charsPerLine > 0 && caretOffset == prevCaretOffset + 1)
+			if(caretOffset - lineOffset == charsPerLine)
+				bellService.ring(BZBellService.LINE_END);
 
 			prevCaretOffset = caretOffset;
 
+			if(source == currentText)
+				statusBar.setCaret(lineIndex, getCellColumn(caretOffset, lineOffset));
+
 			//   scroll other text to match current
 			if(lineIndex == prevLineIndex)
 				return;
@@ -1480,12 +1639,12 @@ public class BZStyledText
 		}
 	}
 
-	private final class BrailleKeyHandler implements KeyListener, VerifyKeyListener
+	private final class BrailleKeyHandler implements KeyListener, VerifyKeyListener, Runnable
 	{
-		private static final String ASCII_BRAILLE = " A1B'K2L@CIF/MSP\"E3H9O6R^DJG>NTQ,*5<-U8V.%[$+X!&;:4\\0Z7(_?W]#Y)=";
 		private final boolean brailleEntry;
+		private final StringBuilder cells = new StringBuilder(16);
 
-		private char dotState, dotChar = 0x2800;
+		private int flushEventCount;
 		private int prevLine;
 
 		private BrailleKeyHandler(boolean brailleEntry)
@@ -1493,97 +1652,79 @@ public class BZStyledText
 			this.brailleEntry = brailleEntry;
 		}
 
-		@Override
-		public void keyPressed(KeyEvent event)
+		private void insertChords()
 		{
-			switch(event.character)
-			{
-			case 'f':
-
-				dotState |= 0x01;
-				dotChar |= 0x01;
-				break;
-
-			case 'd':
-
-				dotState |= 0x02;
-				dotChar |= 0x02;
-				break;
-
-			case 's':
-
-				dotState |= 0x04;
-				dotChar |= 0x04;
-				break;
-
-			case 'j':
-
-				dotState |= 0x08;
-				dotChar |= 0x08;
-				break;
+			if(!chordRecognizer.hasChord())
+				return;
 
-			case 'k':
+			//   usually only one chord is completed at a time
+			String string;
+			int dots = chordRecognizer.nextChord();
+			if(!chordRecognizer.hasChord())
+				string = brailleTable.getString(dots);
+			else
+			{
+				cells.setLength(0);
+				cells.append(brailleTable.getChar(dots));
+				while(chordRecognizer.hasChord())
+					cells.append(brailleTable.getChar(chordRecognizer.nextChord()));
+				string = cells.toString();
+			}
 
-				dotState |= 0x10;
-				dotChar |= 0x10;
-				break;
+			brailleText.insert(string);
+			brailleText.setCaretOffset(brailleText.getCaretOffset() + string.length());
+		}
 
-			case 'l':
+		/**
+		 * Keys pressed with Ctrl, Alt, or Command are shortcuts, not dots.
+		 */
+		private boolean isShortcut(KeyEvent event)
+		{
+			if((event.stateMask & (SWT.MOD1 | SWT.MOD3 | SWT.MOD4)) == 0)
+				return false;
+			chordRecognizer.reset();
+			return true;
+		}
 
-				dotState |= 0x20;
-				dotChar |= 0x20;
-				break;
-			}
+		@Override
+		public void keyPressed(KeyEvent event)
+		{
+			if(isShortcut(event))
+				return;
+			chordRecognizer.press(brailleTable.getDot(event.keyCode), event.time);
 		}
 
 		@Override
 		public void keyReleased(KeyEvent event)
 		{
-			if(windowBug)
-			    dotState = 0;
-			else switch(event.character)
-			{
-			case 'f':
-
-				dotState &= ~0x01;
-				break;
-
-			case 'd':
-
-				dotState &= ~0x02;
-				break;
-
-			case 's':
-
-				dotState &= ~0x04;
-				break;
-
-			case 'j':
-
-				dotState &= ~0x08;
-				break;
-
-			case 'k':
-
-				dotState &= ~0x10;
-				break;
-
-			case 'l':
-
-				dotState &= ~0x20;
-				break;
-			}
+			if(isShortcut(event))
+				return;
+			chordRecognizer.release(brailleTable.getDot(event.keyCode), event.time);
+			insertChords();
 
-			//   insert resulting braille character
-			if(dotState == 0 && (dotChar & 0xff) != 0)
+			//   not every release is reported on some platforms
+			if(chordRecognizer.isLatched())
 			{
-				dotChar = ASCII_BRAILLE.charAt(dotChar & 0xff);
-				brailleText.insert(Character.toString(dotChar));
-				brailleText.setCaretOffset(brailleText.getCaretOffset() + 1);
-				dotChar = 0x2800;
+				flushEventCount = chordRecognizer.getEventCount();
+				parentShell.getDisplay().timerExec(chordRecognizer.getWindow() * 2 + 1, this);
 			}
 		}
 
+		/**
+		 * <p>
+		 * Completes a chord when no more key events have occurred since a dot
+		 * was released.
+		 * </p>
+		 */
+		@Override
+		public void run()
+		{
+			if(brailleText.isDisposed() || chordRecognizer.getEventCount() != flushEventCount)
+				return;
+			chordRecognizer.flush();
+			insertChords();
+		}
+
 		@Override
 		public void verifyKey(VerifyEvent event)
 		{
@@ -1607,12 +1748,9 @@ public class BZStyledText
 			{
 				//   play page bell
 				int index = styledText.getLineAtOffset(styledText.getCaretOffset());
-				if(index == prevLine + 1 && index % linesPerPage == pageMarginBell - 2)
-				if(!pageMarginClip.isActive())
-				{
-					pageMarginClip.setFramePosition(0);
-					pageMarginClip.start();
-				}
+				int linesPerPage = getLinesPerPage();
+				if(linesPerPage > 0 && index == prevLine + 1 && index % linesPerPage == pageMarginBell - 2)
+					bellService.ring(BZBellService.PAGE_MARGIN);
 				prevLine = index;
 			}
 
@@ -1623,6 +1761,52 @@ public class BZStyledText
 		}
 	}
 
+	/**
+	 * <p>
+	 * Checks the lines of each change of the content.
+	 * </p><p>
+	 * This is used instead of <code>ExtendedModifyHandler</code> as
+	 * rewrapping and reading files change the content directly.
+	 * </p>
+	 */
+	private final class ContentChangeHandler implements TextChangeListener
+	{
+		private int startLine, replacedLines, newLines;
+
+		@Override
+		public void textChanging(TextChangingEvent event)
+		{
+			startLine = content.getLineAtOffset(event.start);
+			replacedLines = event.replaceLineCount;
+			newLines = event.newLineCount;
+		}
+
+		@Override
+		public void textChanged(TextChangedEvent ignored)
+		{
+			validator.textChanged(startLine, replacedLines, newLines);
+			marginIndex.textChanged(startLine, replacedLines, newLines);
+			pageHashes.textChanged(startLine, replacedLines, newLines);
+		}
+
+		@Override
+		public void textSet(TextChangedEvent ignored)
+		{
+			pageHashes.rebuild();
+			revalidate();
+		}
+	}
+
+	private final class MarginHandler implements LineBackgroundListener
+	{
+		@Override
+		public void lineGetBackground(LineBackgroundEvent event)
+		{
+			if(marginIndex.isLong(content.getLineAtOffset(event.lineOffset)))
+				event.lineBackground = marginColor;
+		}
+	}
+
 	private final class ExtendedModifyHandler implements ExtendedModifyListener
 	{
 		private final StyledText source;
@@ -1642,17 +1826,7 @@ public class BZStyledText
 			if(source != currentText)
 				return;
 
-			if(undoing)
-				changes.add(changeIndex, event);
-			else if(redoing)
-				changes.add(changeIndex++, event);
-			else
-			{
-				if(changeIndex < changes.size())
-					changes.subList(changeIndex, changes.size()).clear();
-				changes.add(changeIndex++, event);
-			}
-			undoing = redoing = false;
+			undoHistory.changed(event.start, event.length, event.replacedText);
 
 			//   need to redraw page lines
 			int lineCount = source.getLineCount();
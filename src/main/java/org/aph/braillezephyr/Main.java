@@ -15,6 +15,7 @@
 
 package org.aph.braillezephyr;
 
+import org.aph.braillezephyr.core.BZBatch;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.ShellEvent;
 import org.eclipse.swt.events.ShellListener;
@@ -25,6 +26,16 @@ import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * <p>
  * Contains the main method.
@@ -39,13 +50,98 @@ public final class Main
 	private final BZFile bzFile;
 	private final BZSettings bzSettings;
 
+	private BZKeyRecorder bzKeyRecorder;
+
 	public static void main(String args[])
 	{
+		//   batch mode runs without a display
+		for(String arg : args)
+		switch(arg)
+		{
+		case "--convert":
+		case "--rewrap":
+		case "--repaginate":
+		case "--validate":
+
+			System.exit(batch(args) ? 0 : 1);
+		}
+
 		new Main(args);
 	}
 
+	private static boolean batch(String args[])
+	{
+		PrintWriter logWriter = new PrintWriter(System.err, true);
+		BZBatch bzBatch = new BZBatch(logWriter);
+		List<File> files = new ArrayList<>();
+
+		String version = Main.class.getPackage().getImplementationVersion();
+		if(version == null)
+			version = System.getProperty("braillezephyr.version", "0.0");
+		bzBatch.setVersion(version);
+
+		try
+		{
+			for(int i = 0; i < args.length; i++)
+			switch(args[i])
+			{
+			case "--convert":  bzBatch.setFormat(optionValue(args, i++));  break;
+			case "--rewrap":  bzBatch.setRewrap(true);  break;
+			case "--repaginate":  bzBatch.setLinesPerPage(Integer.parseInt(optionValue(args, i++)));  break;
+			case "--chars-per-line":  bzBatch.setCharsPerLine(Integer.parseInt(optionValue(args, i++)));  break;
+			case "--validate":  bzBatch.setValidate(true);  break;
+			case "--report":  bzBatch.setReportFile(new File(optionValue(args, i++)));  break;
+			case "--output":  bzBatch.setOutputDirectory(new File(optionValue(args, i++)));  break;
+			case "--threads":  bzBatch.setThreads(Integer.parseInt(optionValue(args, i++)));  break;
+
+			default:
+
+				File file = new File(args[i]);
+				if(!file.exists())
+				{
+					logWriter.println("ERROR:  No such file or directory:  " + args[i]);
+					return false;
+				}
+				files.add(file);
+				break;
+			}
+		}
+		catch(IllegalArgumentException exception)
+		{
+			logWriter.println("ERROR:  Invalid option value:  " + exception.getMessage());
+			return false;
+		}
+
+		return bzBatch.run(files);
+	}
+
 	public Main(String args[])
 	{
+		String fileName = null;
+		String recordFileName = null;
+		String replayFileName = null;
+		boolean replayMaxSpeed = false;
+		String profileFileName = null;
+		boolean exitAfterStartup = false;
+
+		for(int i = 0; i < args.length; i++)
+		switch(args[i])
+		{
+		case "--record":  recordFileName = optionValue(args, i++);  break;
+		case "--replay":  replayFileName = optionValue(args, i++);  break;
+		case "--replay-max-speed":  replayMaxSpeed = true;  break;
+		case "--startup-profile":  profileFileName = optionValue(args, i++);  break;
+		case "--exit-after-startup":  exitAfterStartup = true;  break;
+
+		default:
+
+			//   assume any other argument is a file to open
+			fileName = args[i];
+			break;
+		}
+
+		BZStartupProfile.start("display");
+
 		//   must be before display is created (on Macs at least)
 		Display.setAppName("BrailleZephyr");
 
@@ -58,24 +154,65 @@ public final class Main
 		shell.setLayout(new FillLayout());
 		shell.setText("BrailleZephyr");
 		shell.addShellListener(new ShellHandler());
+		BZStartupProfile.stop("display");
 
 		bzStyledText = new BZStyledText(shell);
 		bzFile = new BZFile(bzStyledText);
 		bzSettings = new BZSettings(bzStyledText);
 		new BZMenu(bzStyledText, bzFile, bzSettings);
 
-		//   assume any argument is a file to open
-		if(args.length > 0)
-			bzFile.openFile(args[0]);
+		if(fileName != null)
+		{
+			BZStartupProfile.start("file");
+			bzFile.openFile(fileName);
+			BZStartupProfile.stop("file");
+		}
+
+		if(recordFileName != null)
+		try
+		{
+			bzKeyRecorder = new BZKeyRecorder(bzStyledText, recordFileName);
+		}
+		catch(IOException exception)
+		{
+			System.err.println("ERROR:  Unable to open key recording:  " + exception.getMessage());
+		}
 
+		BZStartupProfile.start("first paint");
+		display.addFilter(SWT.Paint, new FirstPaintHandler(profileFileName, exitAfterStartup));
 		shell.open();
+
+		//   replay keys then exit without saving
+		if(replayFileName != null)
+		try
+		{
+			new BZKeyReplayer(bzStyledText, replayFileName, replayMaxSpeed).start(shell::dispose);
+		}
+		catch(IOException | BZException exception)
+		{
+			System.err.println("ERROR:  Unable to read key recording:  " + exception.getMessage());
+			shell.dispose();
+		}
+
 		while(!shell.isDisposed())
 		if(!display.readAndDispatch())
 			display.sleep();
 
+		if(bzKeyRecorder != null)
+			bzKeyRecorder.close();
 		display.dispose();
 	}
 
+	private static String optionValue(String args[], int index)
+	{
+		if(index + 1 >= args.length)
+		{
+			System.err.println("ERROR:  Missing value for " + args[index]);
+			System.exit(1);
+		}
+		return args[index + 1];
+	}
+
 	private boolean checkClosing()
 	{
 		boolean doit = true;
@@ -104,6 +241,56 @@ public final class Main
 		return doit;
 	}
 
+	/**
+	 * <p>
+	 * Ends startup timing when the braille or ASCII text is first painted,
+	 * and exits without saving if asked to, such as for the training run of
+	 * the class data sharing archive.
+	 * </p>
+	 */
+	private class FirstPaintHandler implements Listener
+	{
+		private final String profileFileName;
+		private final boolean exitAfterStartup;
+
+		private FirstPaintHandler(String profileFileName, boolean exitAfterStartup)
+		{
+			this.profileFileName = profileFileName;
+			this.exitAfterStartup = exitAfterStartup;
+		}
+
+		@Override
+		public void handleEvent(Event event)
+		{
+			if(event.widget != bzStyledText.getBrailleText() && event.widget != bzStyledText.getAsciiText())
+				return;
+			BZStartupProfile.stop("first paint");
+			event.display.removeFilter(SWT.Paint, this);
+
+			BZStartupProfile.log(bzStyledText.getLogWriter());
+			if(exitAfterStartup)
+				event.display.asyncExec(shell::dispose);
+			if(profileFileName == null)
+				return;
+
+			String json = BZStartupProfile.toJson(bzStyledText.getVersionString());
+			if(profileFileName.equals("-"))
+			{
+				System.out.print(json);
+				System.out.flush();
+				return;
+			}
+			try(Writer writer = new OutputStreamWriter(new FileOutputStream(profileFileName), StandardCharsets.UTF_8))
+			{
+				writer.write(json);
+			}
+			catch(IOException exception)
+			{
+				System.err.println("ERROR:  Unable to write startup profile:  " + exception.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * <p>
 	 * Needed to catch Quit (Command-Q) on Macs